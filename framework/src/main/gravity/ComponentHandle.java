@@ -0,0 +1,54 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity;
+
+/**
+ * A component handle is a component key that is resolved, once, to the component it identifies.
+ * Clients that repeatedly retrieve instances of the same component may hold on to a handle,
+ * obtained via {@link gravity.Container#getComponentHandle(ComponentKey)}, and retrieve the
+ * instances from the handle without the container having to look up the component every time.
+ * <p>
+ * The instances returned by the handle are identical to the ones returned by
+ * {@link gravity.Container#getComponentInstance(ComponentKey)}; they obey the component strategy
+ * prevalent at the time of the call.
+ * <p>
+ * A handle is bound to the component and hence will not see the components registered after the
+ * container is {@link gravity.Container#cleanup() cleaned up}.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public interface ComponentHandle
+{
+    void initialize(Context context, ComponentKey compKey, RealizableComponent comp);
+
+    /**
+     * @return Returns the key of the component this handle is bound to.
+     */
+    ComponentKey getComponentKey();
+
+    /**
+     * @return Returns an instance of the component this handle is bound to.
+     * @see gravity.Container#getComponentInstance(ComponentKey)
+     */
+    Object getInstance();
+
+    /**
+     * This method should be used to return a component instance obtained via {@link #getInstance()}.
+     * 
+     * @see gravity.Container#collectComponentInstance(ComponentKey, Object)
+     */
+    void collectInstance(Object comp);
+}
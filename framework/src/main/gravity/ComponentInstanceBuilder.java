@@ -14,6 +14,8 @@
 
 package gravity;
 
+import gravity.util.SwitchPoint;
+
 /**
  * @author Harish Krishnaswamy
  * @version $Id: ComponentInstanceBuilder.java,v 1.2 2005-10-06 21:59:22 harishkswamy Exp $
@@ -38,8 +40,30 @@ public interface ComponentInstanceBuilder
 
     boolean isInDispatchingState();
 
+    /**
+     * @return Returns the switch point that will be invalidated when the strategy changes.
+     */
+    SwitchPoint getStrategySwitchPoint();
+
+    /**
+     * Invalidates the current strategy switch point and replaces it with a new one. This forces the
+     * proxies of the components using this builder to re-read their strategy state.
+     */
+    void invalidateStrategySwitchPoint();
+
+    /**
+     * @return Returns the concrete singleton instance when the strategy is a non-dispatching
+     *         singleton strategy that has already been realized, otherwise null.
+     */
+    Object getRealizedSingleton();
+
     void wrapStrategy(ComponentStrategyType strategyType);
 
+    /**
+     * @return Returns the outermost strategy of the strategy chain.
+     */
+    ComponentStrategy getStrategy();
+
     Object getConcreteInstance(RealizableComponent comp);
 
     /**
@@ -62,5 +86,21 @@ public interface ComponentInstanceBuilder
      */
     Object newInstance(RealizableComponent comp);
 
+    /**
+     * Invokes the shutdown callbacks on the provided concrete instance.
+     * 
+     * @throws WrapperException
+     *             When there is any problem while invoking the callbacks.
+     */
+    void shutdownInstance(RealizableComponent comp, Object inst);
+
+    /**
+     * Invokes the post-clone callbacks on the provided clone of a concrete instance.
+     * 
+     * @throws WrapperException
+     *             When there is any problem while invoking the callbacks.
+     */
+    void postCloneInstance(RealizableComponent comp, Object inst);
+
     void collectInstance(Object inst);
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity;
+
+/**
+ * A component lease holds a concrete component instance, obtained via
+ * {@link gravity.Container#leaseComponentInstance(ComponentKey)}, until it is closed. Closing the
+ * lease returns the instance to the container; for pooled components, directly to the pool without
+ * looking up the instance. Clients should close leases in a finally block:
+ * 
+ * <pre>
+ * ComponentLease lease = container.leaseComponentInstance(key);
+ * 
+ * try
+ * {
+ *     Connection conn = (Connection) lease.getInstance();
+ *     ...
+ * }
+ * finally
+ * {
+ *     lease.close();
+ * }
+ * </pre>
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public interface ComponentLease
+{
+    /**
+     * @return Returns the concrete component instance held by this lease; it must not be used after
+     *         the lease is closed.
+     */
+    Object getInstance();
+
+    /**
+     * Returns the instance held by this lease to the container. Closing a lease more than once has
+     * no effect.
+     */
+    void close();
+
+    /**
+     * @return Returns true if this lease has been closed.
+     */
+    boolean isClosed();
+}
@@ -25,17 +25,22 @@ public class ComponentPhase
     /**
      * The phase during which component dependencies are injected.
      */
-    public static final ComponentPhase INJECTION = new ComponentPhase("Injection");
+    public static final ComponentPhase INJECTION  = new ComponentPhase("Injection");
 
     /**
      * The phase during which components are initialized, after instantiation.
      */
-    public static final ComponentPhase START_UP  = new ComponentPhase("Start-Up");
+    public static final ComponentPhase START_UP   = new ComponentPhase("Start-Up");
 
     /**
      * The phase during which components are shutdown.
      */
-    public static final ComponentPhase SHUTDOWN  = new ComponentPhase("Shutdown");
+    public static final ComponentPhase SHUTDOWN   = new ComponentPhase("Shutdown");
+
+    /**
+     * The phase during which cloned components reset their per-instance state, after cloning.
+     */
+    public static final ComponentPhase POST_CLONE = new ComponentPhase("Post-Clone");
 
     private String                     _name;
     private volatile int               _hashCode;
@@ -16,6 +16,12 @@ package gravity;
 
 /**
  * This will act as a proxy for the component.
+ * <p>
+ * Implementations generate a proxy class per component interface and are expected to cache it.
+ * The proxy class is generated in the class loader of the component interface, which is the
+ * context class loader for interfaces loaded by the bootstrap loader, so the cached class is keyed
+ * by the class loader as well. The cache is shared by all the components, but must not keep the
+ * component interfaces or their class loaders from being unloaded.
  * 
  * @author Harish Krishnaswamy
  * @version $Id: ComponentProxy.java,v 1.6 2005-10-06 21:59:20 harishkswamy Exp $
@@ -0,0 +1,66 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity;
+
+/**
+ * A component scope is a unit of work, like a request or a task, opened on a thread via
+ * {@link gravity.Container#openScope()}. The scoped components, see
+ * {@link gravity.plugins.DefaultComponentStrategyType#SCOPED}, have one instance per scope, which
+ * lives until the scope is closed. Closing the scope collects all its instances together through
+ * the strategies the scoped strategy decorates, so pooled instances are returned to their pools.
+ * Only the instances that were built for the scope, when the decorated strategies build a new
+ * instance on every call, are shut down; shared instances, like singletons, are left running.
+ * Clients should close scopes in a finally block:
+ * 
+ * <pre>
+ * ComponentScope scope = container.openScope();
+ * 
+ * try
+ * {
+ *     ...
+ * }
+ * finally
+ * {
+ *     scope.close();
+ * }
+ * </pre>
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public interface ComponentScope
+{
+    /**
+     * @return Returns the scope that was current on the thread when this scope was opened, null if
+     *         there was none.
+     */
+    ComponentScope getEnclosingScope();
+
+    /**
+     * @return Returns the number of instances held by this scope.
+     */
+    int size();
+
+    /**
+     * Collects the instances held by this scope, in the reverse order of their creation, and makes
+     * the enclosing scope current again. Closing a scope more than once has no effect.
+     */
+    void close();
+
+    /**
+     * @return Returns true if this scope has been closed.
+     */
+    boolean isClosed();
+}
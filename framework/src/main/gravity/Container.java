@@ -71,6 +71,17 @@ public interface Container
      */
     Object getComponentInstance(ComponentKey compKey);
 
+    /**
+     * Resolves the supplied key to the component registered for it and returns a handle bound to
+     * that component. Clients that retrieve instances of the same component over and over should
+     * hold on to the handle and retrieve the instances from it instead of this container.
+     * 
+     * @param compKey
+     *            The key that uniquely identifies the component within this container.
+     * @return The handle to the component registered for the supplied key.
+     */
+    ComponentHandle getComponentHandle(ComponentKey compKey);
+
     /**
      * This method should be used to return a component instance obtained via one of the
      * {@link Container#getComponentInstance(Object)}methods. This method is primarily used for
@@ -83,6 +94,31 @@ public interface Container
      */
     void collectComponentInstance(ComponentKey compKey, Object comp);
 
+    /**
+     * Leases a concrete instance of the component registered for the supplied key. The instance is
+     * returned to the container when the lease is closed; pooled instances go straight back to
+     * their pool.
+     * 
+     * @param compKey
+     *            The key that uniquely identifies the component within this container.
+     * @return The lease of the component instance.
+     */
+    ComponentLease leaseComponentInstance(ComponentKey compKey);
+
+    /**
+     * Opens a new scope on the executing thread. The new scope is the current scope of the thread
+     * until it is closed, then the scope that was current before is current again.
+     * 
+     * @return The new scope.
+     * @see ComponentScope
+     */
+    ComponentScope openScope();
+
+    /**
+     * @return Returns the current scope of the executing thread, null if no scope is open.
+     */
+    ComponentScope getCurrentScope();
+
     /**
      * Gets the configuration registered for the supplied key.
      * 
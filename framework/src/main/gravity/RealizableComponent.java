@@ -14,6 +14,8 @@
 
 package gravity;
 
+import gravity.util.SwitchPoint;
+
 /**
  * Implementations of this interface will enable a component proxy to be realized into a concrete
  * instance. This is primarily an interface for {@link gravity.ComponentProxy}and
@@ -49,8 +51,38 @@ public interface RealizableComponent extends Component
      */
     Object newInstance();
 
+    /**
+     * Invokes the shutdown callbacks of this component on the provided concrete instance. This
+     * method is primarily for {@link ComponentStrategy}s that discard the instances they serve.
+     * 
+     * @see ComponentPhase#SHUTDOWN
+     */
+    void shutdownInstance(Object inst);
+
+    /**
+     * Invokes the post-clone callbacks of this component on the provided clone of a concrete
+     * instance.
+     * 
+     * @see ComponentPhase#POST_CLONE
+     */
+    void postCloneInstance(Object inst);
+
     /**
      * @return true If the component is in dispatching state and false otherwise.
      */
     boolean isInDispatchingState();
+
+    /**
+     * @return Returns the switch point that will be invalidated when the strategy of this component
+     *         changes. The strategy state, like {@link #isInDispatchingState()}, derived after
+     *         obtaining the switch point remains current until the switch point is invalidated.
+     */
+    SwitchPoint getStrategySwitchPoint();
+
+    /**
+     * @return Returns the concrete singleton instance of this component when the component strategy
+     *         is a non-dispatching singleton strategy that has already been realized, otherwise
+     *         null.
+     */
+    Object getRealizedSingleton();
 }
\ No newline at end of file
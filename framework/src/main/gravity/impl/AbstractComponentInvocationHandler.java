@@ -17,6 +17,12 @@ package gravity.impl;
 import gravity.Context;
 import gravity.RealizableComponent;
 import gravity.util.Message;
+import gravity.util.SwitchPoint;
+import net.sf.cglib.proxy.Callback;
+import net.sf.cglib.proxy.Factory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
 
 /**
  * This class is basically a template for various proxy-invocation-handler-implementations to use.
@@ -28,14 +34,30 @@ import gravity.util.Message;
  */
 public abstract class AbstractComponentInvocationHandler
 {
+    /**
+     * This is the strategy state of the component as seen by this handler, it remains current until
+     * its switch point is invalidated. The instance is null when the component is dispatching.
+     */
+    private static final class Binding
+    {
+        private final SwitchPoint _switchPoint;
+        private final Object      _instance;
+
+        private Binding(SwitchPoint switchPoint, Object instance)
+        {
+            _switchPoint = switchPoint;
+            _instance = instance;
+        }
+    }
+
     protected Context             _context;
     protected RealizableComponent _component;
 
     /**
-     * This instance is cached here so if the component is not in dispatching state, the calls to
-     * the component will always go to the originally returned instance.
+     * The concrete instance is cached here so if the component is not in dispatching state, the
+     * calls to the component will always go to the originally returned instance.
      */
-    protected Object              _componentInstance;
+    private volatile Binding      _binding;
 
     protected AbstractComponentInvocationHandler(Context context, RealizableComponent comp)
     {
@@ -43,40 +65,124 @@ public abstract class AbstractComponentInvocationHandler
         _component = comp;
     }
 
+    /**
+     * Re-reads the strategy state of the component after it has changed or on the very first
+     * call. Only the realization of the concrete instance of a non-dispatching component is
+     * synchronized, so racing first calls on the same proxy share a single instance.
+     */
+    private Object rebind()
+    {
+        // The switch point must be read first so any strategy change from here on invalidates it
+        SwitchPoint switchPoint = _component.getStrategySwitchPoint();
+
+        if (_component.isInDispatchingState())
+        {
+            /*
+             * The cached instance should be cleared here so it can be garbage-collected and if
+             * ever the component returns to a non-dispatching state, the first call after, will
+             * get a new instance.
+             */
+            _binding = new Binding(switchPoint, null);
+
+            return _component.getConcreteInstance();
+        }
+
+        synchronized (this)
+        {
+            Binding binding = _binding;
+
+            Object instance = binding == null ? null : binding._instance;
+
+            if (instance == null)
+                instance = _component.getConcreteInstance();
+
+            _binding = new Binding(switchPoint, instance);
+
+            return instance;
+        }
+    }
+
+    /**
+     * @return Returns the handler of the provided component proxy, or null if the provided object
+     *         is not a component proxy.
+     */
+    private static AbstractComponentInvocationHandler getHandler(Object obj)
+    {
+        // Generated proxies are their own handlers
+        if (obj instanceof AbstractComponentInvocationHandler)
+            return (AbstractComponentInvocationHandler) obj;
+
+        if (Proxy.isProxyClass(obj.getClass()))
+        {
+            InvocationHandler handler = Proxy.getInvocationHandler(obj);
+
+            if (handler instanceof AbstractComponentInvocationHandler)
+                return (AbstractComponentInvocationHandler) handler;
+        }
+        else if (obj instanceof Factory)
+        {
+            Callback callback = ((Factory) obj).getCallback(0);
+
+            if (callback instanceof AbstractComponentInvocationHandler)
+                return (AbstractComponentInvocationHandler) callback;
+        }
+
+        return null;
+    }
+
+    /**
+     * Strategies that take instances back, like pooling, use this to identify the instance being
+     * returned. When the provided object is a component proxy, the concrete instance it is bound to
+     * is detached from it, so the next call on the proxy obtains an instance afresh.
+     * 
+     * @return Returns the concrete instance the provided proxy was bound to, null if the proxy was
+     *         not bound, or the provided object itself if it is not a component proxy.
+     */
+    static Object detachConcreteInstance(Object obj)
+    {
+        if (obj == null)
+            return null;
+
+        AbstractComponentInvocationHandler handler = getHandler(obj);
+
+        if (handler == null)
+            return obj;
+
+        synchronized (handler)
+        {
+            Binding binding = handler._binding;
+
+            if (binding == null || binding._instance == null)
+                return null;
+
+            handler._binding = null;
+
+            return binding._instance;
+        }
+    }
+
     /**
      * This is the algorithm to obtain a concrete component instance that subclasses must use.
      * <p>
-     * The state of the proxyable component is checked for every call here to enable the dynamic
-     * behavior. This way a component can change its strategy even after the instance was returned
-     * to the caller and yet it will always obey the strategy (ThreadLocal/Lazy/Pooled ...)
-     * prevalent at the time of the call.
+     * The state of the proxyable component is re-read whenever the component strategy changes to
+     * enable the dynamic behavior. This way a component can change its strategy even after the
+     * instance was returned to the caller and yet it will always obey the strategy
+     * (ThreadLocal/Lazy/Pooled ...) prevalent at the time of the call. Until the strategy changes,
+     * a call only checks the validity of the switch point obtained from the component.
      */
     protected final Object getConcreteComponentInstance()
     {
         try
         {
-            Object instance;
+            Binding binding = _binding;
 
-            if (_component.isInDispatchingState())
-            {
-                instance = _component.getConcreteInstance();
+            if (binding == null || !binding._switchPoint.isValid())
+                return rebind();
 
-                /*
-                 * The cached instance should be cleared here so it can be garbage-collected and if
-                 * ever the component returns to a non-dispatching state, the first call after, will
-                 * get a new instance - handled in the else block.
-                 */
-                _componentInstance = null;
-            }
-            else
-            {
-                if (_componentInstance == null)
-                    _componentInstance = _component.getConcreteInstance();
-
-                instance = _componentInstance;
-            }
+            if (binding._instance == null)
+                return _component.getConcreteInstance();
 
-            return instance;
+            return binding._instance;
         }
         catch (Exception e)
         {
@@ -84,4 +190,4 @@ public abstract class AbstractComponentInvocationHandler
                 Message.CANNOT_GET_CONCRETE_COMPONENT_INSTANCE, _component);
         }
     }
-}
\ No newline at end of file
+}
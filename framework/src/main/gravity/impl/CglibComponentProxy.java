@@ -20,16 +20,23 @@ import gravity.RealizableComponent;
 import gravity.util.Message;
 import net.sf.cglib.proxy.Callback;
 import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
 
 /**
  * This is the CgLib version of {@link gravity.ComponentProxy}.
+ * <p>
+ * The first proxy generated for a component interface and class loader is cached as a
+ * {@link Factory}, and the subsequent proxies are created from it without setting up an
+ * {@link Enhancer}. The factories are shared by all the components.
  * 
  * @author Harish Krishnaswamy
  * @version $Id: CglibComponentProxy.java,v 1.6 2005-10-06 21:59:27 harishkswamy Exp $
  */
 public class CglibComponentProxy implements ComponentProxy
 {
-    private Context _context;
+    private static final ComponentProxyCache PROXY_FACTORIES = new ComponentProxyCache();
+
+    private Context                          _context;
 
     public void initialize(Context context)
     {
@@ -44,6 +51,33 @@ public class CglibComponentProxy implements ComponentProxy
         return new CglibComponentInvocationHandler(_context, comp);
     }
 
+    private Factory getProxyFactory(Class compIntf, Callback callback)
+    {
+        ClassLoader classLoader = _context.getClassUtils().getClassLoader(compIntf);
+
+        Factory factory = (Factory) PROXY_FACTORIES.get(compIntf, classLoader);
+
+        if (factory == null)
+        {
+            Enhancer enhancer = new Enhancer();
+
+            enhancer.setClassLoader(classLoader);
+
+            enhancer.setSuperclass(compIntf);
+
+            enhancer.setCallback(callback);
+
+            factory = (Factory) enhancer.create();
+
+            // The cached factory must not hold on to a component
+            factory.setCallback(0, null);
+
+            PROXY_FACTORIES.put(compIntf, classLoader, factory);
+        }
+
+        return factory;
+    }
+
     /**
      * This creates a new proxy instance for the provided component.
      */
@@ -51,19 +85,13 @@ public class CglibComponentProxy implements ComponentProxy
     {
         try
         {
-            Enhancer enhancer = new Enhancer();
-
-            enhancer.setClassLoader(_context.getClassUtils().getClassLoader(comp.getInterface()));
-
-            enhancer.setSuperclass(comp.getInterface());
-
-            enhancer.setCallback(newComponentInvocationHandler(comp));
+            Callback callback = newComponentInvocationHandler(comp);
 
-            return enhancer.create();
+            return getProxyFactory(comp.getInterface(), callback).newInstance(callback);
         }
         catch (Exception e)
         {
             throw _context.getExceptionWrapper().wrap(e, Message.CANNOT_CREATE_PROXY, comp);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentStrategy;
+import gravity.Context;
+import gravity.RealizableComponent;
+
+import java.lang.reflect.Method;
+
+/**
+ * This is a lazy loading strategy for prototype components that are expensive to construct but
+ * cheap to copy. It builds one fully initialized instance, the template, and serves a copy of the
+ * template for every request; the template itself is never served. The template is copied with a
+ * public method, that takes no arguments, configured via {@link #COPY_METHOD_KEY}; it defaults to
+ * <code>clone</code>, which the component must make public for {@link Cloneable} components.
+ * <p>
+ * The copies bypass the construction, injection and start-up of the component, their
+ * per-instance state is reset with the post-clone callbacks of the component, which are invoked on
+ * every copy.
+ * 
+ * @see gravity.ComponentPhase#POST_CLONE
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class CloningComponentStrategy extends LazyLoadingComponentStrategy
+{
+    /**
+     * The name of the method that copies the template, a {@link String}.
+     */
+    public static final String COPY_METHOD_KEY = "gravity.cloning.copyMethod";
+
+    private String             _copyMethodName;
+
+    private volatile Object    _template;
+    private Method             _copyMethod;
+
+    public void initialize(Context context, ComponentStrategy strategy)
+    {
+        super.initialize(context, strategy);
+
+        _copyMethodName = (String) context.getContextItem(COPY_METHOD_KEY);
+    }
+
+    /**
+     * Configures the name of the method that copies the template of this strategy's component,
+     * overriding the context setting.
+     */
+    public void configure(String copyMethodName)
+    {
+        _copyMethodName = copyMethodName;
+    }
+
+    private synchronized Object getTemplate(RealizableComponent component)
+    {
+        if (_template == null)
+        {
+            Object template = super.getComponentInstance(component);
+
+            _copyMethod = _context.getReflectUtils().getMethod(template.getClass(),
+                _copyMethodName, null);
+
+            _template = template;
+        }
+
+        return _template;
+    }
+
+    /**
+     * @return Returns a copy of the template, after invoking the post-clone callbacks on it.
+     */
+    public Object getComponentInstance(RealizableComponent component)
+    {
+        Object template = _template;
+
+        if (template == null)
+            template = getTemplate(component);
+
+        Object compInst = _context.getReflectUtils().invokeMethod(template, _copyMethod, null,
+            component);
+
+        component.postCloneInstance(compInst);
+
+        return compInst;
+    }
+
+    /**
+     * @return Returns the name of the method that copies the template.
+     */
+    public String getCopyMethodName()
+    {
+        return _copyMethodName;
+    }
+
+    /**
+     * Every copy of the template is new, whatever strategy the template comes from.
+     */
+    public boolean buildsNewInstances()
+    {
+        return true;
+    }
+
+    public String toString()
+    {
+        return " [Cloning" + decoratedStrategyToString() + "] ";
+    }
+}
@@ -0,0 +1,123 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.util.WeakClassMap;
+
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+
+/**
+ * This caches what a {@link gravity.ComponentProxy}needs to create proxies of a component
+ * interface, like the constructor of the generated proxy class, per component interface and class
+ * loader. A cache is shared by all the components using the same proxy implementation.
+ * <p>
+ * The cached factories refer to their proxy classes, which refer to the component interface and
+ * the class loader, so the factories are held softly and the class loaders weakly; neither the
+ * interface nor the class loader is kept from being unloaded by this cache.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+final class ComponentProxyCache
+{
+    private static final class Entry extends SoftReference
+    {
+        private final WeakReference _classLoader;
+
+        private Entry(ClassLoader classLoader, Object proxyFactory)
+        {
+            super(proxyFactory);
+
+            _classLoader = new WeakReference(classLoader);
+        }
+    }
+
+    /**
+     * The proxy factories of a component interface, one per class loader. The entries are copied on
+     * every addition so lookups are lock free.
+     */
+    private static final class InterfaceEntries
+    {
+        private volatile Entry[] _entries = new Entry[0];
+
+        private Object get(ClassLoader classLoader)
+        {
+            Entry[] entries = _entries;
+
+            for (int i = 0; i < entries.length; i++)
+            {
+                Object proxyFactory = entries[i].get();
+
+                // A cleared factory never matches
+                if (proxyFactory != null && entries[i]._classLoader.get() == classLoader)
+                    return proxyFactory;
+            }
+
+            return null;
+        }
+
+        private synchronized void put(ClassLoader classLoader, Object proxyFactory)
+        {
+            Entry[] entries = _entries;
+
+            Entry[] newEntries = new Entry[entries.length + 1];
+
+            int size = 0;
+
+            for (int i = 0; i < entries.length; i++)
+            {
+                // Drop the cleared entries and the replaced one
+                if (entries[i].get() != null && entries[i]._classLoader.get() != classLoader)
+                    newEntries[size++] = entries[i];
+            }
+
+            newEntries[size++] = new Entry(classLoader, proxyFactory);
+
+            Entry[] trimmed = new Entry[size];
+
+            System.arraycopy(newEntries, 0, trimmed, 0, size);
+
+            _entries = trimmed;
+        }
+    }
+
+    private final WeakClassMap _interfaces = new WeakClassMap();
+
+    /**
+     * @return Returns the proxy factory cached for the provided component interface and class
+     *         loader, or null if there is none.
+     */
+    Object get(Class compIntf, ClassLoader classLoader)
+    {
+        InterfaceEntries entries = (InterfaceEntries) _interfaces.get(compIntf);
+
+        return entries == null ? null : entries.get(classLoader);
+    }
+
+    /**
+     * Caches the provided proxy factory for the provided component interface and class loader,
+     * replacing the one cached for the same class loader, if any.
+     */
+    void put(Class compIntf, ClassLoader classLoader, Object proxyFactory)
+    {
+        InterfaceEntries entries = (InterfaceEntries) _interfaces.get(compIntf);
+
+        if (entries == null)
+            entries = (InterfaceEntries) _interfaces.putIfAbsent(compIntf, new InterfaceEntries());
+
+        entries.put(classLoader, proxyFactory);
+    }
+}
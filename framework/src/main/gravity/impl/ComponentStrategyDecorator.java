@@ -63,6 +63,41 @@ public abstract class ComponentStrategyDecorator implements ComponentStrategy
             _decoratedStrategy.collectComponentInstance(comp);
     }
 
+    /**
+     * @return Returns true if every call to {@link #getComponentInstance(RealizableComponent)}
+     *         builds a new instance, which this strategy does not keep; by default, defers to the
+     *         decorated strategy.
+     *         <p>
+     *         This method is intended to be overridden by subclasses that serve instances they keep,
+     *         like the {@link SingletonComponentStrategy}for example.
+     */
+    public boolean buildsNewInstances()
+    {
+        return decoratedStrategyBuildsNewInstances();
+    }
+
+    /**
+     * @return Returns true when this strategy does not decorate another strategy, otherwise
+     *         defers to the decorated strategy; strategies that are not decorators are assumed to
+     *         keep their instances.
+     */
+    public boolean decoratedStrategyBuildsNewInstances()
+    {
+        if (_decoratedStrategy == null)
+            return true;
+
+        return _decoratedStrategy instanceof ComponentStrategyDecorator
+            && ((ComponentStrategyDecorator) _decoratedStrategy).buildsNewInstances();
+    }
+
+    /**
+     * @return Returns the strategy this strategy decorates, null if there is none.
+     */
+    public ComponentStrategy getDecoratedStrategy()
+    {
+        return _decoratedStrategy;
+    }
+
     /**
      * @return Returns an empty string when this strategy does not decorate another strategy,
      *         otherwise it defers to the decorated strategy.
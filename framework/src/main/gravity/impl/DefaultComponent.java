@@ -24,6 +24,7 @@ import gravity.Location;
 import gravity.RealizableComponent;
 import gravity.UsageException;
 import gravity.util.Message;
+import gravity.util.SwitchPoint;
 
 /**
  * This is the default component implementation. This implementation delegates instance creation to
@@ -37,16 +38,21 @@ import gravity.util.Message;
  */
 public final class DefaultComponent implements RealizableComponent
 {
-    private Context                  _context;
+    private Context                           _context;
 
     /**
      * The key for this component. This is a property of the component and cannot be moved to the
      * instance builder
      */
-    private ComponentKey             _key;
-    private ComponentInstanceBuilder _instanceBuilder;
-    private Location                 _registrationLocation;
-    private Location                 _retrievalLocation;
+    private ComponentKey                      _key;
+
+    /**
+     * The builder and locations may be replaced at runtime, they are volatile so the changes are
+     * safely published to the threads using this component.
+     */
+    private volatile ComponentInstanceBuilder _instanceBuilder;
+    private volatile Location                 _registrationLocation;
+    private volatile Location                 _retrievalLocation;
 
     public void initialize(Context context, ComponentKey compKey)
     {
@@ -64,7 +70,12 @@ public final class DefaultComponent implements RealizableComponent
 
     public void registerImplementation(Component comp)
     {
+        ComponentInstanceBuilder oldBuilder = _instanceBuilder;
+
         _instanceBuilder = (ComponentInstanceBuilder) comp.getFactory();
+
+        // The proxies of this component are bound to the old builder's strategy state
+        oldBuilder.invalidateStrategySwitchPoint();
     }
 
     public void registerImplementation(Class compClass, Object[] ctorArgs,
@@ -114,6 +125,16 @@ public final class DefaultComponent implements RealizableComponent
         return _instanceBuilder.isInDispatchingState();
     }
 
+    public SwitchPoint getStrategySwitchPoint()
+    {
+        return _instanceBuilder.getStrategySwitchPoint();
+    }
+
+    public Object getRealizedSingleton()
+    {
+        return _instanceBuilder.getRealizedSingleton();
+    }
+
     public void wrapStrategy(ComponentStrategyType strategyType)
     {
         _instanceBuilder.wrapStrategy(strategyType);
@@ -135,6 +156,16 @@ public final class DefaultComponent implements RealizableComponent
         return instance;
     }
 
+    public void shutdownInstance(Object inst)
+    {
+        _instanceBuilder.shutdownInstance(this, inst);
+    }
+
+    public void postCloneInstance(Object inst)
+    {
+        _instanceBuilder.postCloneInstance(this, inst);
+    }
+
     public void collectInstance(Object inst)
     {
         _instanceBuilder.collectInstance(inst);
@@ -0,0 +1,119 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentHandle;
+import gravity.ComponentInstanceBuilder;
+import gravity.ComponentKey;
+import gravity.Context;
+import gravity.MutableContainer;
+import gravity.RealizableComponent;
+import gravity.util.SwitchPoint;
+
+/**
+ * This is the default component handle implementation. The handle is bound to the instance
+ * builder of the component, so retrieving an instance from the handle neither looks up the
+ * component in the container nor goes through the component; the instances come from the proxy
+ * factory cached by the builder, or, in direct injection mode, from its realized singleton.
+ * <p>
+ * The handle is rebound when the component is bound to another builder, which invalidates the
+ * strategy switch point of the old builder. The builders are thread safe, hence a handle may be
+ * shared among threads.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public final class DefaultComponentHandle implements ComponentHandle
+{
+    private ComponentKey             _key;
+    private RealizableComponent      _component;
+
+    /**
+     * The container when it is in direct injection mode, otherwise null.
+     */
+    private DefaultContainer         _directContainer;
+
+    private ComponentInstanceBuilder _builder;
+
+    /**
+     * This is written after the builder and read before it, so a valid switch point guarantees a
+     * current builder.
+     */
+    private volatile SwitchPoint     _switchPoint;
+
+    public void initialize(Context context, ComponentKey compKey, RealizableComponent comp)
+    {
+        _key = compKey;
+        _component = comp;
+
+        MutableContainer container = context.getMutableContainer();
+
+        if (container instanceof DefaultContainer
+            && ((DefaultContainer) container).isDirectInjection())
+            _directContainer = (DefaultContainer) container;
+
+        bind();
+    }
+
+    private void bind()
+    {
+        ComponentInstanceBuilder builder = (ComponentInstanceBuilder) _component.getFactory();
+
+        _builder = builder;
+        _switchPoint = builder.getStrategySwitchPoint();
+    }
+
+    private ComponentInstanceBuilder getBuilder()
+    {
+        if (!_switchPoint.isValid())
+            bind();
+
+        return _builder;
+    }
+
+    public ComponentKey getComponentKey()
+    {
+        return _key;
+    }
+
+    public Object getInstance()
+    {
+        ComponentInstanceBuilder builder = getBuilder();
+
+        if (_directContainer != null)
+        {
+            Object instance = builder.getRealizedSingleton();
+
+            if (instance != null)
+            {
+                _directContainer.elideComponentKey(_key);
+
+                return instance;
+            }
+        }
+
+        return builder.getInstance(_component);
+    }
+
+    public void collectInstance(Object comp)
+    {
+        _component.collectInstance(comp);
+    }
+
+    public String toString()
+    {
+        return "[Handle: " + _component + "]";
+    }
+}
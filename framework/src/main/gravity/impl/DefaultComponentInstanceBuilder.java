@@ -25,7 +25,11 @@ import gravity.DynamicWeaver;
 import gravity.RealizableComponent;
 import gravity.UsageException;
 import gravity.util.Message;
+import gravity.util.ReflectUtils;
+import gravity.util.SwitchPoint;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -41,20 +45,138 @@ import java.util.List;
  * <p>
  * The DefaultComponentInstanceBuilder may be shared by multiple components, i.e. when components
  * act as facets of the same implementation, they all share the same instance builder.
+ * <p>
+ * The registrations are compiled into a construction plan when the first concrete instance is
+ * needed, and the plan is reused for every instance thereafter; any registration discards the plan.
  * 
  * @author Harish Krishnaswamy
  * @version $Id: DefaultComponentInstanceBuilder.java,v 1.2 2005-10-06 21:59:27 harishkswamy Exp $
  */
 public final class DefaultComponentInstanceBuilder implements ComponentInstanceBuilder
 {
-    private Context             _context;
-    private Class               _implementation;
-    private Object[]            _constructorArgs;
-    private ComponentCallback[] _callbacks;
-    private ComponentStrategy   _componentStrategy;
-    private Object              _factoryDelegate;
-    private String              _factoryMethodName;
-    private Object[]            _factoryMethodArgs;
+    /**
+     * Invokes a callback with its realized arguments. The callback method is resolved against the
+     * class of the first instance, and resolved again only if the weaver produces an instance of a
+     * different class.
+     */
+    private static final class CallbackInvoker
+    {
+        private final String      _name;
+        private final Object[]    _args;
+
+        /**
+         * The instance class and the callback method resolved against it, replaced together.
+         */
+        private volatile Object[] _resolution = {null, null};
+
+        private CallbackInvoker(String name, Object[] args)
+        {
+            _name = name;
+            _args = args;
+        }
+
+        private void invoke(ReflectUtils reflectUtils, Object instance)
+        {
+            Class instClass = instance.getClass();
+
+            Object[] resolution = _resolution;
+
+            if (resolution[0] != instClass)
+            {
+                Method method = reflectUtils.getMethod(instClass, _name, _args);
+
+                resolution = new Object[]{instClass, method};
+
+                _resolution = resolution;
+            }
+
+            reflectUtils.invokeMethod(instance, (Method) resolution[1], _args, null);
+        }
+    }
+
+    /**
+     * These are the callbacks of each phase with their realized arguments, compiled from the
+     * registered callbacks alone, so instances that were not built by this builder can be shut down
+     * and cloned without resolving how to construct one.
+     */
+    private static final class CallbackPlan
+    {
+        private final int               _registrationCount;
+        private final CallbackInvoker[] _injectionCallbacks;
+        private final CallbackInvoker[] _startUpCallbacks;
+        private final CallbackInvoker[] _shutdownCallbacks;
+        private final CallbackInvoker[] _postCloneCallbacks;
+
+        private CallbackPlan(int registrationCount, CallbackInvoker[] injectionCallbacks,
+            CallbackInvoker[] startUpCallbacks, CallbackInvoker[] shutdownCallbacks,
+            CallbackInvoker[] postCloneCallbacks)
+        {
+            _registrationCount = registrationCount;
+            _injectionCallbacks = injectionCallbacks;
+            _startUpCallbacks = startUpCallbacks;
+            _shutdownCallbacks = shutdownCallbacks;
+            _postCloneCallbacks = postCloneCallbacks;
+        }
+    }
+
+    /**
+     * This is everything that is needed to build a concrete instance, compiled from the
+     * registrations: the resolved constructor or factory method with its realized arguments, the
+     * weaver and the callback plan.
+     */
+    private static final class ConstructionPlan
+    {
+        private final int           _registrationCount;
+        private final Constructor   _constructor;
+        private final Object        _factoryDelegate;
+        private final Method        _factoryMethod;
+        private final Object[]      _args;
+        private final DynamicWeaver _weaver;
+        private final CallbackPlan  _callbackPlan;
+
+        private ConstructionPlan(int registrationCount, Constructor constructor,
+            Object factoryDelegate, Method factoryMethod, Object[] args, DynamicWeaver weaver,
+            CallbackPlan callbackPlan)
+        {
+            _registrationCount = registrationCount;
+            _constructor = constructor;
+            _factoryDelegate = factoryDelegate;
+            _factoryMethod = factoryMethod;
+            _args = args;
+            _weaver = weaver;
+            _callbackPlan = callbackPlan;
+        }
+    }
+
+    private Context                      _context;
+
+    /*
+     * The registrations may happen at runtime while other threads are building instances, so the
+     * registration methods are synchronized among themselves and the fields are volatile to safely
+     * publish the registrations to the building threads. The implementation and factory delegate
+     * are always written last so a thread that sees them also sees their arguments and callbacks.
+     * Every registration increments the registration count last, which invalidates the current
+     * construction plan, even one compiled while the registration was in progress.
+     */
+    private volatile Class               _implementation;
+    private volatile Object[]            _constructorArgs;
+    private volatile ComponentCallback[] _callbacks;
+    private volatile ComponentStrategy   _componentStrategy;
+    private volatile Object              _factoryDelegate;
+    private volatile String              _factoryMethodName;
+    private volatile Object[]            _factoryMethodArgs;
+    private volatile int                 _registrationCount;
+
+    private volatile ConstructionPlan    _constructionPlan;
+    private volatile CallbackPlan        _callbackPlan;
+
+    /**
+     * The proxy factory is thread safe and caches the proxy classes it generates, so it is created
+     * on demand, once, and shared by all the components using this builder.
+     */
+    private volatile ComponentProxy      _componentProxy;
+
+    private volatile SwitchPoint         _strategySwitchPoint = new SwitchPoint();
 
     public void initialize(Context context)
     {
@@ -64,24 +186,26 @@ public final class DefaultComponentInstanceBuilder implements ComponentInstanceB
         _componentStrategy.initialize(context, null);
     }
 
-    public void registerImplementation(Class compClass, Object[] ctorArgs,
+    public synchronized void registerImplementation(Class compClass, Object[] ctorArgs,
         ComponentCallback[] callbacks)
     {
-        _implementation = compClass;
         _constructorArgs = ctorArgs;
         _callbacks = callbacks;
+        _implementation = compClass;
+        _registrationCount++;
     }
 
-    public void registerFactoryDelegate(Object factory, String factoryMethodName,
+    public synchronized void registerFactoryDelegate(Object factory, String factoryMethodName,
         Object[] factoryMethodArgs, ComponentCallback[] callbacks)
     {
-        _factoryDelegate = factory;
         _factoryMethodName = factoryMethodName;
         _factoryMethodArgs = factoryMethodArgs;
         _callbacks = callbacks;
+        _factoryDelegate = factory;
+        _registrationCount++;
     }
 
-    public void registerConstructorArguments(Object[] args)
+    public synchronized void registerConstructorArguments(Object[] args)
     {
         if (args == null)
             return;
@@ -97,9 +221,11 @@ public final class DefaultComponentInstanceBuilder implements ComponentInstanceB
 
             _constructorArgs = deps.toArray();
         }
+
+        _registrationCount++;
     }
 
-    public void registerCallbacks(ComponentCallback[] callbacks)
+    public synchronized void registerCallbacks(ComponentCallback[] callbacks)
     {
         if (callbacks == null)
             return;
@@ -115,6 +241,8 @@ public final class DefaultComponentInstanceBuilder implements ComponentInstanceB
 
             _callbacks = (ComponentCallback[]) tCallbacks.toArray(new ComponentCallback[tCallbacks.size()]);
         }
+
+        _registrationCount++;
     }
 
     /**
@@ -122,14 +250,23 @@ public final class DefaultComponentInstanceBuilder implements ComponentInstanceB
      */
     public Object getInstance(RealizableComponent comp)
     {
-        // PERF Startup performance improvement buffer
-        // The ComponentProxy object can be created once and cached here to improve startup
-        // performance at the cost of memory. The proxy object is only needed at the time of
-        // generating a component instance and that is typically done during startup.
-        ComponentProxy proxy = (ComponentProxy) _context.newApiInstance(ComponentProxy.class);
-        proxy.initialize(_context);
-
-        return proxy.newInstance(comp);
+        return getComponentProxy().newInstance(comp);
+    }
+
+    private ComponentProxy getComponentProxy()
+    {
+        ComponentProxy proxy = _componentProxy;
+
+        // Racing threads may create a proxy factory each, that is harmless
+        if (proxy == null)
+        {
+            proxy = (ComponentProxy) _context.newApiInstance(ComponentProxy.class);
+            proxy.initialize(_context);
+
+            _componentProxy = proxy;
+        }
+
+        return proxy;
     }
 
     public boolean isInDispatchingState()
@@ -137,13 +274,46 @@ public final class DefaultComponentInstanceBuilder implements ComponentInstanceB
         return _componentStrategy.isDispatching();
     }
 
-    public void wrapStrategy(ComponentStrategyType strategyType)
+    public Object getRealizedSingleton()
+    {
+        ComponentStrategy strategy = _componentStrategy;
+
+        // Only a singleton strategy at the top of the chain decides the instance identity
+        if (strategy instanceof SingletonComponentStrategy && !strategy.isDispatching())
+            return ((SingletonComponentStrategy) strategy).getRealizedInstance();
+
+        return null;
+    }
+
+    public SwitchPoint getStrategySwitchPoint()
+    {
+        return _strategySwitchPoint;
+    }
+
+    public synchronized void invalidateStrategySwitchPoint()
+    {
+        SwitchPoint switchPoint = _strategySwitchPoint;
+
+        _strategySwitchPoint = new SwitchPoint();
+
+        switchPoint.invalidate();
+    }
+
+    public synchronized void wrapStrategy(ComponentStrategyType strategyType)
     {
         // If already of the same type, do nothing
         if (strategyType.isTypeOf(_componentStrategy))
             return;
 
         _componentStrategy = strategyType.newInstance(_context, _componentStrategy);
+
+        // The new strategy must be visible before the proxies are sent to look for it
+        invalidateStrategySwitchPoint();
+    }
+
+    public ComponentStrategy getStrategy()
+    {
+        return _componentStrategy;
     }
 
     public Object getConcreteInstance(RealizableComponent comp)
@@ -153,79 +323,148 @@ public final class DefaultComponentInstanceBuilder implements ComponentInstanceB
 
     // Construct new instance ======================================================================
 
-    private void invokeCallbacks(Object instance, ComponentPhase compPhase)
+    /**
+     * @return Returns a copy of the provided arguments with the component keys replaced by their
+     *         component instances, so the registered arguments are left as registered.
+     */
+    private Object[] realizeArguments(Object[] args)
     {
-        for (int i = 0; i < _callbacks.length; i++)
-        {
-            ComponentCallback callback = _callbacks[i];
-            ComponentPhase phase = callback.getComponentPhase();
+        if (args == null)
+            return null;
 
-            if (compPhase.equals(phase))
-            {
-                _context.getMutableContainer().realizeKeys(callback.getArguments());
+        Object[] realizedArgs = args.clone();
 
-                _context.getReflectUtils().invokeMethod(instance, callback.getName(),
-                    callback.getArguments());
-            }
+        _context.getMutableContainer().realizeKeys(realizedArgs);
+
+        return realizedArgs;
+    }
+
+    private CallbackInvoker[] compileCallbacks(ComponentCallback[] callbacks, ComponentPhase phase)
+    {
+        List invokers = new ArrayList();
+
+        for (int i = 0; callbacks != null && i < callbacks.length; i++)
+        {
+            ComponentCallback callback = callbacks[i];
+
+            if (phase.equals(callback.getComponentPhase()))
+                invokers.add(new CallbackInvoker(callback.getName(),
+                    realizeArguments(callback.getArguments())));
         }
+
+        return (CallbackInvoker[]) invokers.toArray(new CallbackInvoker[invokers.size()]);
     }
 
-    /**
-     * This method will invoke all injection callbacks followed by all startup callbacks.
-     */
-    private void invokeInitializationCallbacks(Object instance)
+    private CallbackPlan getCallbackPlan()
     {
-        if (_callbacks == null)
-            return;
+        // The count must be read before the callbacks the plan is compiled from
+        int registrationCount = _registrationCount;
+
+        CallbackPlan plan = _callbackPlan;
+
+        // Racing threads may compile a plan each, that is harmless
+        if (plan == null || plan._registrationCount != registrationCount)
+        {
+            ComponentCallback[] callbacks = _callbacks;
+
+            plan = new CallbackPlan(registrationCount, compileCallbacks(callbacks,
+                ComponentPhase.INJECTION), compileCallbacks(callbacks, ComponentPhase.START_UP),
+                compileCallbacks(callbacks, ComponentPhase.SHUTDOWN), compileCallbacks(callbacks,
+                    ComponentPhase.POST_CLONE));
+
+            _callbackPlan = plan;
+        }
 
-        invokeCallbacks(instance, ComponentPhase.INJECTION);
-        invokeCallbacks(instance, ComponentPhase.START_UP);
+        return plan;
     }
 
     /**
-     * Gives {@link gravity.DynamicWeaver}an opportunity to weave the supplied object and then it
-     * sets any dependencies via the setter methods with the provided property name/value map.
+     * Compiles a construction plan from the current registrations. The constructor, or factory
+     * method, is resolved against the realized arguments.
      */
-    private Object initializeComponent(Object instance)
+    private ConstructionPlan compileConstructionPlan(int registrationCount)
     {
+        ReflectUtils reflectUtils = _context.getReflectUtils();
+
+        Class implementation = _implementation;
+        Object factoryDelegate = _factoryDelegate;
+
+        Constructor constructor = null;
+        Method factoryMethod = null;
+        Object[] args;
+
+        if (implementation != null)
+        {
+            args = realizeArguments(_constructorArgs);
+
+            constructor = reflectUtils.getConstructor(implementation, args);
+        }
+        else
+        {
+            args = realizeArguments(_factoryMethodArgs);
+
+            factoryMethod = reflectUtils.getMethod(factoryDelegate.getClass(), _factoryMethodName,
+                args);
+        }
+
         // This is the hook to let cross-cutting concerns be weaved into the component.
         DynamicWeaver weaver = (DynamicWeaver) _context.newApiInstance(DynamicWeaver.class);
 
-        Object enhInst = weaver.weave(instance);
+        return new ConstructionPlan(registrationCount, constructor, factoryDelegate,
+            factoryMethod, args, weaver, getCallbackPlan());
+    }
 
-        invokeInitializationCallbacks(enhInst);
+    private ConstructionPlan getConstructionPlan()
+    {
+        // The count must be read before the registrations the plan is compiled from
+        int registrationCount = _registrationCount;
 
-        return enhInst;
+        ConstructionPlan plan = _constructionPlan;
+
+        // Racing threads may compile a plan each, that is harmless
+        if (plan == null || plan._registrationCount != registrationCount)
+        {
+            plan = compileConstructionPlan(registrationCount);
+
+            _constructionPlan = plan;
+        }
+
+        return plan;
+    }
+
+    private void invokeCallbacks(ReflectUtils reflectUtils, Object instance,
+        CallbackInvoker[] callbacks)
+    {
+        for (int i = 0; i < callbacks.length; i++)
+            callbacks[i].invoke(reflectUtils, instance);
     }
 
     /**
-     * Builds a component via constructor injection.
-     * <p>
-     * Instantiates the component from the supplied class and arguments and initializes it.
+     * Instantiates the component, via the constructor or the factory delegate, gives
+     * {@link gravity.DynamicWeaver}an opportunity to weave it and then invokes all injection
+     * callbacks followed by all startup callbacks.
      * 
      * @return Fully constructed and initialized component.
      */
-    private Object constructViaConstructor()
+    private Object construct(ConstructionPlan plan)
     {
-        _context.getMutableContainer().realizeKeys(_constructorArgs);
+        ReflectUtils reflectUtils = _context.getReflectUtils();
 
-        Object instance = _context.getReflectUtils().invokeConstructor(_implementation,
-            _constructorArgs);
+        Object instance;
 
-        return initializeComponent(instance);
-    }
+        if (plan._constructor == null)
+            instance = reflectUtils.invokeMethod(plan._factoryDelegate, plan._factoryMethod,
+                plan._args, null);
 
-    /**
-     * Delegates the instance creation to the factory delegate and then initializes it.
-     */
-    private Object constructViaFactoryDelegate()
-    {
-        _context.getMutableContainer().realizeKeys(_factoryMethodArgs);
+        else
+            instance = reflectUtils.invokeConstructor(plan._constructor, plan._args);
+
+        Object enhInst = plan._weaver.weave(instance);
 
-        Object instance = _context.getReflectUtils().invokeMethod(_factoryDelegate,
-            _factoryMethodName, _factoryMethodArgs);
+        invokeCallbacks(reflectUtils, enhInst, plan._callbackPlan._injectionCallbacks);
+        invokeCallbacks(reflectUtils, enhInst, plan._callbackPlan._startUpCallbacks);
 
-        return initializeComponent(instance);
+        return enhInst;
     }
 
     /**
@@ -254,15 +493,7 @@ public final class DefaultComponentInstanceBuilder implements ComponentInstanceB
 
         try
         {
-            Object instance;
-
-            if (_implementation == null)
-                instance = constructViaFactoryDelegate();
-
-            else
-                instance = constructViaConstructor();
-
-            return instance;
+            return construct(getConstructionPlan());
         }
         catch (Exception e)
         {
@@ -273,6 +504,40 @@ public final class DefaultComponentInstanceBuilder implements ComponentInstanceB
 
     // End - Construct new instance ================================================================
 
+    /**
+     * Invokes all shutdown callbacks on the provided concrete instance.
+     */
+    public void shutdownInstance(RealizableComponent comp, Object inst)
+    {
+        try
+        {
+            invokeCallbacks(_context.getReflectUtils(), inst,
+                getCallbackPlan()._shutdownCallbacks);
+        }
+        catch (Exception e)
+        {
+            throw _context.getExceptionWrapper().wrap(e,
+                Message.CANNOT_SHUTDOWN_COMPONENT_INSTANCE, comp);
+        }
+    }
+
+    /**
+     * Invokes all post-clone callbacks on the provided clone.
+     */
+    public void postCloneInstance(RealizableComponent comp, Object inst)
+    {
+        try
+        {
+            invokeCallbacks(_context.getReflectUtils(), inst,
+                getCallbackPlan()._postCloneCallbacks);
+        }
+        catch (Exception e)
+        {
+            throw _context.getExceptionWrapper().wrap(e, Message.CANNOT_CLONE_COMPONENT_INSTANCE,
+                comp);
+        }
+    }
+
     public void collectInstance(Object inst)
     {
         _componentStrategy.collectComponentInstance(inst);
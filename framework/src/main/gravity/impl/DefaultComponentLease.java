@@ -0,0 +1,80 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentLease;
+import gravity.RealizableComponent;
+import gravity.util.Pool;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This is the default component lease implementation. The lease of a pooled component holds the
+ * {@link Pool.Loan}of the instance and returns it straight to the pool; the lease of any other
+ * component returns the instance to the component.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public final class DefaultComponentLease implements ComponentLease
+{
+    private final Pool                _pool;
+    private final Pool.Loan           _loan;
+    private final RealizableComponent _component;
+    private final Object              _instance;
+    private final AtomicBoolean       _closed = new AtomicBoolean();
+
+    DefaultComponentLease(Pool pool, Pool.Loan loan)
+    {
+        _pool = pool;
+        _loan = loan;
+        _component = null;
+        _instance = loan.getItem();
+    }
+
+    DefaultComponentLease(RealizableComponent comp, Object instance)
+    {
+        _pool = null;
+        _loan = null;
+        _component = comp;
+        _instance = instance;
+    }
+
+    public Object getInstance()
+    {
+        return _instance;
+    }
+
+    public void close()
+    {
+        if (!_closed.compareAndSet(false, true))
+            return;
+
+        if (_loan != null)
+            _pool.collectLoan(_loan);
+        else
+            _component.collectInstance(_instance);
+    }
+
+    public boolean isClosed()
+    {
+        return _closed.get();
+    }
+
+    public String toString()
+    {
+        return "[Lease: " + _instance + ", Closed: " + _closed + "]";
+    }
+}
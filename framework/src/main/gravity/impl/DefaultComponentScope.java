@@ -0,0 +1,165 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentScope;
+import gravity.RealizableComponent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is the default component scope implementation. It holds one instance per
+ * {@link ScopedComponentStrategy}, and hands them back to their strategies, most recent first,
+ * when it is closed.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public final class DefaultComponentScope implements ComponentScope
+{
+    private static final class Entry
+    {
+        private final ScopedComponentStrategy _strategy;
+        private final RealizableComponent     _component;
+        private final Object                  _instance;
+
+        private Entry(ScopedComponentStrategy strategy, RealizableComponent component,
+            Object instance)
+        {
+            _strategy = strategy;
+            _component = component;
+            _instance = instance;
+        }
+    }
+
+    private final ThreadLocal    _currentScope;
+    private final ComponentScope _enclosingScope;
+
+    /**
+     * The entries keyed by their strategy, and in the order of their creation.
+     */
+    private final Map            _entryMap = new HashMap();
+    private final List           _entries  = new ArrayList();
+
+    private boolean              _closed;
+
+    /**
+     * @param currentScope
+     *            The thread local variable that holds the current scope of the container.
+     */
+    DefaultComponentScope(ThreadLocal currentScope)
+    {
+        _currentScope = currentScope;
+        _enclosingScope = (ComponentScope) currentScope.get();
+    }
+
+    public ComponentScope getEnclosingScope()
+    {
+        return _enclosingScope;
+    }
+
+    /**
+     * @return Returns the instance held for the provided strategy, null if there is none.
+     */
+    synchronized Object getInstance(ScopedComponentStrategy strategy)
+    {
+        Entry entry = (Entry) _entryMap.get(strategy);
+
+        return entry == null ? null : entry._instance;
+    }
+
+    /**
+     * Holds the provided instance for the provided strategy until this scope is closed.
+     * 
+     * @return Returns false if this scope is already closed, the instance is not held then.
+     */
+    synchronized boolean putInstance(ScopedComponentStrategy strategy,
+        RealizableComponent component, Object instance)
+    {
+        if (_closed)
+            return false;
+
+        Entry entry = new Entry(strategy, component, instance);
+
+        _entryMap.put(strategy, entry);
+        _entries.add(entry);
+
+        return true;
+    }
+
+    public synchronized int size()
+    {
+        return _entries.size();
+    }
+
+    /**
+     * Releases every instance even if some fail to release, and throws the first failure
+     * afterwards.
+     */
+    public void close()
+    {
+        List entries;
+
+        synchronized (this)
+        {
+            if (_closed)
+                return;
+
+            _closed = true;
+
+            entries = new ArrayList(_entries);
+
+            _entryMap.clear();
+            _entries.clear();
+        }
+
+        // Only the thread that opened this scope may have it as its current scope
+        if (_currentScope.get() == this)
+            _currentScope.set(_enclosingScope);
+
+        RuntimeException failure = null;
+
+        for (int i = entries.size() - 1; i >= 0; i--)
+        {
+            Entry entry = (Entry) entries.get(i);
+
+            try
+            {
+                entry._strategy.releaseInstance(entry._component, entry._instance);
+            }
+            catch (RuntimeException e)
+            {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    public synchronized boolean isClosed()
+    {
+        return _closed;
+    }
+
+    public String toString()
+    {
+        return "[Scope: " + size() + " instances, Closed: " + isClosed() + "]";
+    }
+}
@@ -16,21 +16,38 @@ package gravity.impl;
 
 import gravity.Component;
 import gravity.ComponentCallback;
+import gravity.ComponentHandle;
+import gravity.ComponentInstanceBuilder;
 import gravity.ComponentKey;
+import gravity.ComponentLease;
+import gravity.ComponentScope;
+import gravity.ComponentStrategy;
 import gravity.ComponentStrategyType;
 import gravity.Context;
 import gravity.Location;
 import gravity.MutableContainer;
 import gravity.Plugin;
+import gravity.RealizableComponent;
 import gravity.UsageException;
 import gravity.util.Message;
+import gravity.util.Pool;
+import gravity.util.WeakClassMap;
 
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 // TODO Container hierarchy
 
@@ -40,38 +57,232 @@ import java.util.Map;
  * Although components and configuration data can be added to this container at runtime, the initial
  * build step should typically be in a single startup thread.
  * <p>
- * This container is not thread safe; so any concurrent registrations that may occur during runtime
- * needs to be synchronized by the client.
+ * By default this container is not thread safe; so any concurrent registrations that may occur
+ * during runtime needs to be synchronized by the client.
+ * <p>
+ * When the {@link #CONCURRENT_REGISTRY_KEY} context item is set to true prior to creating the
+ * container, the container runs in concurrent registry mode. In this mode component and
+ * configuration lookups never block and runtime registrations are safely published to readers
+ * without a global lock. Configuration lists are copy-on-write and configuration maps do not accept
+ * null values in this mode.
+ * <p>
+ * When the {@link #DIRECT_INJECTION_KEY} context item is set to true prior to creating the
+ * container, the container runs in direct injection mode. In this mode, once a component whose
+ * strategy is a non-dispatching singleton is realized, the container serves the concrete singleton
+ * instance itself rather than a proxy, to both the clients and the dependent components. Calls on
+ * the instances so served skip the proxy altogether, but they will also not follow any strategy
+ * changes made to the component afterwards. The keys of these components can be obtained from
+ * {@link #getElidedComponentKeys()}.
+ * <p>
+ * The statistics of pooled components can be obtained from their pools via
+ * {@link #getComponentPool(ComponentKey)}.
  * 
  * @author Harish Krishnaswamy
  * @version $Id: DefaultContainer.java,v 1.11 2005-10-06 21:59:27 harishkswamy Exp $
  */
 public final class DefaultContainer implements MutableContainer
 {
-    private Context                     _context;
+    /**
+     * This property specifies whether the container should run in concurrent registry mode. This
+     * property must be set in the application context prior to creating the container.
+     */
+    public static final String          CONCURRENT_REGISTRY_KEY = "gravity.container.concurrent";
+
+    /**
+     * This property specifies whether the container should run in direct injection mode. This
+     * property must be set in the application context prior to creating the container.
+     */
+    public static final String          DIRECT_INJECTION_KEY    = "gravity.container.directInjection";
+
+    private volatile Context            _context;
+
+    private final boolean               _concurrent;
+
+    private final boolean               _directInjection;
+
+    /**
+     * The keys of the components served without a proxy in direct injection mode. This is always
+     * concurrent as it is updated while serving instances.
+     */
+    private final Map                   _elidedComponentKeys    = new ConcurrentHashMap();
 
     /**
      * Components container.
      */
-    private final Map                   _componentCache     = new HashMap();
+    private final Map                   _componentCache;
 
     /**
      * Configurations container.
      */
-    private final Map                   _configurationCache = new HashMap();
+    private final Map                   _configurationCache;
 
     /**
      * Component keys generator/container.
      */
     private final ComponentKeyGenerator _componentKeyGenerator;
 
+    /**
+     * The current scope of each thread.
+     */
+    private final ThreadLocal           _currentScope           = new ThreadLocal();
+
     public DefaultContainer(Context context)
     {
         _context = context;
 
+        _concurrent = isEnabled(context, CONCURRENT_REGISTRY_KEY);
+        _directInjection = isEnabled(context, DIRECT_INJECTION_KEY);
+
+        _componentCache = _concurrent ? (Map) new ConcurrentHashMap() : new HashMap();
+        _configurationCache = _concurrent ? (Map) new ConcurrentHashMap() : new HashMap();
+
         _componentKeyGenerator = new ComponentKeyGenerator(context);
     }
 
+    private static boolean isEnabled(Context context, String flagKey)
+    {
+        // The framework defaults are not loaded yet, so the flag may only come from the application
+        // context; it may also be a string when loaded from a properties file.
+        Object flag = context.getContextItem(flagKey);
+
+        return flag == null ? false : Boolean.valueOf(flag.toString()).booleanValue();
+    }
+
+    /**
+     * @return Returns true if this container is in concurrent registry mode.
+     */
+    public boolean isConcurrentRegistry()
+    {
+        return _concurrent;
+    }
+
+    /**
+     * @return Returns true if this container is in direct injection mode.
+     */
+    public boolean isDirectInjection()
+    {
+        return _directInjection;
+    }
+
+    /**
+     * @return Returns the keys of the components that this container has served without a proxy
+     *         so far. This is always empty unless this container is in direct injection mode.
+     */
+    public Set getElidedComponentKeys()
+    {
+        return Collections.unmodifiableSet(new HashSet(_elidedComponentKeys.keySet()));
+    }
+
+    /**
+     * @return Returns the pool of the component registered for the provided key, or null if the
+     *         component is not pooled.
+     */
+    public Pool getComponentPool(ComponentKey compKey)
+    {
+        PoolingComponentStrategy strategy = getPoolingStrategy(getComponent(compKey));
+
+        return strategy == null ? null : strategy.getPool();
+    }
+
+    /**
+     * @return Returns the outermost strategy of the component registered for the provided key, for
+     *         access to the metrics of the strategy.
+     */
+    public ComponentStrategy getComponentStrategy(ComponentKey compKey)
+    {
+        ComponentInstanceBuilder builder = (ComponentInstanceBuilder) getComponent(compKey)
+            .getFactory();
+
+        return builder.getStrategy();
+    }
+
+    /**
+     * @return Returns the number of instances of the component registered for the provided key
+     *         that are bound to live threads, see
+     *         {@link ThreadLocalComponentStrategy#getThreadBoundCount()}; zero if the component is
+     *         not thread local.
+     */
+    public int getThreadBoundCount(ComponentKey compKey)
+    {
+        ThreadLocalComponentStrategy strategy = (ThreadLocalComponentStrategy) getStrategy(
+            getComponent(compKey), ThreadLocalComponentStrategy.class);
+
+        return strategy == null ? 0 : strategy.getThreadBoundCount();
+    }
+
+    /**
+     * Drains the prefetch buffer of the component registered for the provided key and shuts the
+     * buffered instances down, when the component is shut down for instance; see
+     * {@link PrefetchingComponentStrategy#drain()}. This does nothing if the component is not
+     * prefetched.
+     */
+    public void drainPrefetchBuffer(ComponentKey compKey)
+    {
+        PrefetchingComponentStrategy strategy = getPrefetchingStrategy(getComponent(compKey));
+
+        if (strategy != null)
+            strategy.drain();
+    }
+
+    /**
+     * @return Returns the prefetching strategy of the provided component, or null if the component
+     *         is not prefetched.
+     */
+    private PrefetchingComponentStrategy getPrefetchingStrategy(Component comp)
+    {
+        return (PrefetchingComponentStrategy) getStrategy(comp, PrefetchingComponentStrategy.class);
+    }
+
+    /**
+     * @return Returns the pooling strategy of the provided component, or null if the component is
+     *         not pooled.
+     */
+    private PoolingComponentStrategy getPoolingStrategy(Component comp)
+    {
+        return (PoolingComponentStrategy) getStrategy(comp, PoolingComponentStrategy.class);
+    }
+
+    /**
+     * @return Returns the first strategy of the provided component's strategy chain that is an
+     *         instance of the provided strategy class, or null if there is none.
+     */
+    private ComponentStrategy getStrategy(Component comp, Class strategyClass)
+    {
+        ComponentInstanceBuilder builder = (ComponentInstanceBuilder) comp.getFactory();
+
+        ComponentStrategy strategy = builder.getStrategy();
+
+        while (strategy instanceof ComponentStrategyDecorator)
+        {
+            if (strategyClass.isInstance(strategy))
+                return strategy;
+
+            strategy = ((ComponentStrategyDecorator) strategy).getDecoratedStrategy();
+        }
+
+        return null;
+    }
+
+    /**
+     * Fills the pools of the pooled components with their configured number of idle instances and
+     * starts their maintenance. This is done when the container is loaded, so the pooled instances
+     * are ready ahead of the first requests.
+     */
+    public void prefillComponentPools()
+    {
+        List comps = new ArrayList(_componentCache.values());
+
+        for (Iterator itr = comps.iterator(); itr.hasNext();)
+        {
+            Component comp = (Component) itr.next();
+
+            PoolingComponentStrategy strategy = getPoolingStrategy(comp);
+
+            if (strategy != null)
+                strategy.prefill((RealizableComponent) comp);
+        }
+    }
+
     /**
      * @return Returns the location of the plugin manifest file from the provided URL.
      */
@@ -158,6 +369,8 @@ public final class DefaultContainer implements MutableContainer
 
         if (autoload.booleanValue())
             autoloadPlugins();
+
+        prefillComponentPools();
     }
 
     public void switchContextTo(Context context)
@@ -186,12 +399,30 @@ public final class DefaultContainer implements MutableContainer
             comp = (Component) _context.newApiInstance(Component.class);
             comp.initialize(_context, compKey);
 
-            _componentCache.put(compKey, comp);
+            comp = (Component) cacheIfAbsent(_componentCache, compKey, comp);
         }
 
         return comp;
     }
 
+    /**
+     * Caches the provided value under the provided key unless another thread beat us to it, in
+     * which case the value cached by the other thread is returned.
+     */
+    private Object cacheIfAbsent(Map cache, Object key, Object value)
+    {
+        if (!_concurrent)
+        {
+            cache.put(key, value);
+
+            return value;
+        }
+
+        Object cached = ((ConcurrentMap) cache).putIfAbsent(key, value);
+
+        return cached == null ? value : cached;
+    }
+
     // MutableContainer methods ====================================================================
 
     // Primary component registration method =======================================================
@@ -204,8 +435,14 @@ public final class DefaultContainer implements MutableContainer
     {
         Component comp = getComponent(compKey);
 
+        PrefetchingComponentStrategy prefetching = getPrefetchingStrategy(comp);
+
         comp.registerImplementation(getComponent(srcCompKey));
 
+        // The strategies of the replaced builder are dropped along with it
+        if (prefetching != null && prefetching != getPrefetchingStrategy(comp))
+            prefetching.drain();
+
         return compKey;
     }
 
@@ -326,7 +563,13 @@ public final class DefaultContainer implements MutableContainer
     {
         config = realizeKey(config);
 
-        _configurationCache.put(configKey, config);
+        // Concurrent maps do not accept nulls; an unregistered configuration is the same as a null
+        // one.
+        if (config == null && _concurrent)
+            _configurationCache.remove(configKey);
+
+        else
+            _configurationCache.put(configKey, config);
 
         return configKey;
     }
@@ -347,6 +590,15 @@ public final class DefaultContainer implements MutableContainer
 
     // Container methods ===========================================================================
 
+    /**
+     * Records that the component registered for the provided key was served without a proxy.
+     */
+    void elideComponentKey(ComponentKey compKey)
+    {
+        if (!_elidedComponentKeys.containsKey(compKey))
+            _elidedComponentKeys.put(compKey, Boolean.TRUE);
+    }
+
     /**
      * Gets the component registered for the supplied component key (component interface + component
      * implementation type).
@@ -359,9 +611,31 @@ public final class DefaultContainer implements MutableContainer
     {
         Component comp = getComponent(compKey);
 
+        if (_directInjection)
+        {
+            Object instance = ((RealizableComponent) comp).getRealizedSingleton();
+
+            if (instance != null)
+            {
+                elideComponentKey(compKey);
+
+                return instance;
+            }
+        }
+
         return comp.getInstance();
     }
 
+    public ComponentHandle getComponentHandle(ComponentKey compKey)
+    {
+        RealizableComponent comp = (RealizableComponent) getComponent(compKey);
+
+        ComponentHandle handle = (ComponentHandle) _context.newApiInstance(ComponentHandle.class);
+        handle.initialize(_context, compKey, comp);
+
+        return handle;
+    }
+
     public void collectComponentInstance(ComponentKey compKey, Object compInst)
     {
         Component comp = getComponent(compKey);
@@ -369,6 +643,20 @@ public final class DefaultContainer implements MutableContainer
         comp.collectInstance(compInst);
     }
 
+    public ComponentLease leaseComponentInstance(ComponentKey compKey)
+    {
+        RealizableComponent comp = (RealizableComponent) getComponent(compKey);
+
+        ComponentStrategy strategy = ((ComponentInstanceBuilder) comp.getFactory()).getStrategy();
+
+        // Only an outermost pool leases its instances directly, an outer strategy, thread local
+        // or scoped for example, decides which of them is served
+        if (strategy instanceof PoolingComponentStrategy)
+            return ((PoolingComponentStrategy) strategy).leaseComponentInstance(comp);
+
+        return new DefaultComponentLease(comp, comp.getConcreteInstance());
+    }
+
     /**
      * Gets the configuration registered for the supplied key.
      * 
@@ -380,9 +668,12 @@ public final class DefaultContainer implements MutableContainer
 
         if (configList == null)
         {
-            configList = (List) _context.newApiInstance(List.class);
+            if (_concurrent)
+                configList = new CopyOnWriteArrayList();
+            else
+                configList = (List) _context.newApiInstance(List.class);
 
-            _configurationCache.put(configKey, configList);
+            configList = (List) cacheIfAbsent(_configurationCache, configKey, configList);
         }
 
         return configList;
@@ -399,9 +690,12 @@ public final class DefaultContainer implements MutableContainer
 
         if (configMap == null)
         {
-            configMap = (Map) _context.newApiInstance(Map.class);
+            if (_concurrent)
+                configMap = new ConcurrentHashMap();
+            else
+                configMap = (Map) _context.newApiInstance(Map.class);
 
-            _configurationCache.put(configKey, configMap);
+            configMap = (Map) cacheIfAbsent(_configurationCache, configKey, configMap);
         }
 
         return configMap;
@@ -425,6 +719,20 @@ public final class DefaultContainer implements MutableContainer
         return config;
     }
 
+    public ComponentScope openScope()
+    {
+        ComponentScope scope = new DefaultComponentScope(_currentScope);
+
+        _currentScope.set(scope);
+
+        return scope;
+    }
+
+    public ComponentScope getCurrentScope()
+    {
+        return (ComponentScope) _currentScope.get();
+    }
+
     public void handlePreThreadTermination()
     {
         _context.getThreadEvent().notifyPreTerminationObservers();
@@ -437,61 +745,107 @@ public final class DefaultContainer implements MutableContainer
     {
         _componentCache.clear();
         _configurationCache.clear();
+        _elidedComponentKeys.clear();
     }
 
     // ComponentKey generator ======================================================================
 
     /**
-     * This is the key that will uniquely identify a component within the container. This key is
-     * composed of the component interface and optionally a component type (a string identifier).
+     * This generates and interns the keys that will uniquely identify a component within the
+     * container.
+     * <p>
+     * The keys are interned in two levels, first by the component interface and then by the
+     * component type. The first level holds the component interfaces weakly and the second level
+     * holds the keys weakly, so the interned keys never keep a component interface, and hence its
+     * class loader, from being unloaded. Key lookup is lock free and allocation free.
      */
     private static class ComponentKeyGenerator
     {
-        private static final String DEFAULT_COMPONENT_TYPE = "default";
+        private static final String       DEFAULT_COMPONENT_TYPE = "default";
 
-        private static final Map    KEYS                   = new HashMap();
+        private static final WeakClassMap KEYS                   = new WeakClassMap();
 
-        private Context             _context;
+        private Context                   _context;
 
         ComponentKeyGenerator(Context context)
         {
             _context = context;
         }
 
+        private ConcurrentMap getKeys(Class compIntf)
+        {
+            ConcurrentMap keys = (ConcurrentMap) KEYS.get(compIntf);
+
+            if (keys == null)
+                keys = (ConcurrentMap) KEYS.putIfAbsent(compIntf, new ConcurrentHashMap());
+
+            return keys;
+        }
+
         ComponentKey get(Class compIntf, Object compType)
         {
+            if (compIntf == null)
+                throw _context.getExceptionWrapper().wrap(new IllegalArgumentException(),
+                    Message.COMPONENT_INTERFACE_MUST_NOT_BE_NULL);
+
             if (compType == null)
                 compType = DEFAULT_COMPONENT_TYPE;
 
-            String keyKey = compIntf + compType.toString();
+            ConcurrentMap keys = getKeys(compIntf);
 
-            ComponentKey compKey = (ComponentKey) KEYS.get(keyKey);
+            Reference keyRef = (Reference) keys.get(compType);
 
-            if (compKey == null)
-            {
-                compKey = new DefaultComponentKey(compIntf, compType, _context);
+            ComponentKey compKey = keyRef == null ? null : (ComponentKey) keyRef.get();
+
+            if (compKey != null)
+                return compKey;
+
+            return intern(keys, keyRef, compIntf, compType);
+        }
+
+        private ComponentKey intern(ConcurrentMap keys, Reference keyRef, Class compIntf,
+            Object compType)
+        {
+            ComponentKey compKey = new DefaultComponentKey(compIntf, compType);
 
-                synchronized (KEYS)
+            Reference newKeyRef = new WeakReference(compKey);
+
+            while (true)
+            {
+                if (keyRef == null)
                 {
-                    KEYS.put(keyKey, compKey);
+                    keyRef = (Reference) keys.putIfAbsent(compType, newKeyRef);
+
+                    if (keyRef == null)
+                        return compKey;
                 }
-            }
 
-            return compKey;
+                ComponentKey internedKey = (ComponentKey) keyRef.get();
+
+                if (internedKey != null)
+                    return internedKey;
+
+                // The interned key was collected, replace it unless another thread already did.
+                if (keys.replace(compType, keyRef, newKeyRef))
+                    return compKey;
+
+                keyRef = (Reference) keys.get(compType);
+            }
         }
 
-        private class DefaultComponentKey implements ComponentKey
+        /**
+         * This is the key that will uniquely identify a component within the container. This key
+         * is composed of the component interface and optionally a component type (a string
+         * identifier).
+         */
+        private static class DefaultComponentKey implements ComponentKey
         {
             private Class        _componentInterface;
             private Object       _componentType;
             private volatile int _hashCode;
 
-            private DefaultComponentKey(Class compIntf, Object compType, Context context)
+            private DefaultComponentKey(Class compIntf, Object compType)
             {
-                if (compIntf == null)
-                    throw context.getExceptionWrapper().wrap(new IllegalArgumentException(),
-                        Message.COMPONENT_INTERFACE_MUST_NOT_BE_NULL);
-
                 _componentInterface = compIntf;
                 _componentType = compType;
             }
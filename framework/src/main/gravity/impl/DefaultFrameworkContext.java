@@ -16,6 +16,7 @@ package gravity.impl;
 
 import gravity.ApplicationContext;
 import gravity.Component;
+import gravity.ComponentHandle;
 import gravity.ComponentInstanceBuilder;
 import gravity.ComponentProxy;
 import gravity.ComponentStrategy;
@@ -72,6 +73,7 @@ public class DefaultFrameworkContext extends DefaultApplicationContext implement
     {
         putContextItem(ApplicationContext.class, DefaultApplicationContext.class);
         putContextItem(Component.class, DefaultComponent.class);
+        putContextItem(ComponentHandle.class, DefaultComponentHandle.class);
         putContextItem(ComponentInstanceBuilder.class, DefaultComponentInstanceBuilder.class);
         putContextItem(ComponentProxy.class, JdkComponentProxy.class);
         putContextItem(ComponentStrategy.class, LazyLoadingComponentStrategy.class);
@@ -87,6 +89,25 @@ public class DefaultFrameworkContext extends DefaultApplicationContext implement
         putContextItem(Message.MESSAGES_CLASSPATH_KEY, "gravity/util/gravity-messages.properties");
         putContextItem(Container.PLUGINS_AUTOLOAD_KEY, Boolean.TRUE);
         putContextItem(PoolingComponentStrategy.POOL_SIZE_KEY, new Integer(10));
+        putContextItem(PoolingComponentStrategy.MIN_SIZE_KEY, new Integer(1));
+        putContextItem(PoolingComponentStrategy.ADAPTIVE_KEY, Boolean.FALSE);
+        putContextItem(PoolingComponentStrategy.MAX_ACTIVE_KEY, new Integer(0));
+        putContextItem(PoolingComponentStrategy.MAX_WAIT_KEY, new Long(-1));
+        putContextItem(PoolingComponentStrategy.MIN_IDLE_KEY, new Integer(0));
+        putContextItem(PoolingComponentStrategy.IDLE_TIMEOUT_KEY, new Long(0));
+        putContextItem(PoolingComponentStrategy.MAINTENANCE_INTERVAL_KEY, new Long(30000));
+        putContextItem(PoolingComponentStrategy.LEAK_SAMPLE_RATE_KEY, new Integer(0));
+        putContextItem(StripedComponentStrategy.STRIPE_COUNT_KEY, new Integer(0));
+        putContextItem(ThreadAffinityComponentStrategy.CACHE_SIZE_KEY, new Integer(0));
+        putContextItem(ThreadLocalComponentStrategy.RECLAIM_INTERVAL_KEY, new Long(0));
+        putContextItem(RefreshingComponentStrategy.TIME_TO_LIVE_KEY, new Long(300000));
+        putContextItem(RefreshingComponentStrategy.REFRESH_AHEAD_KEY, new Long(30000));
+        putContextItem(RefreshingComponentStrategy.RETIREMENT_DELAY_KEY, new Long(1000));
+        putContextItem(PrefetchingComponentStrategy.MIN_DEPTH_KEY, new Integer(1));
+        putContextItem(PrefetchingComponentStrategy.MAX_DEPTH_KEY, new Integer(16));
+        putContextItem(CloningComponentStrategy.COPY_METHOD_KEY, "clone");
+        putContextItem(DefaultContainer.CONCURRENT_REGISTRY_KEY, Boolean.FALSE);
+        putContextItem(DefaultContainer.DIRECT_INJECTION_KEY, Boolean.FALSE);
 
         setMessage(new Message(this));
         setExceptionWrapper(new DefaultExceptionWrapper(getMessage()));
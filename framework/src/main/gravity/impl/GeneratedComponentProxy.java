@@ -0,0 +1,228 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentProxy;
+import gravity.Context;
+import gravity.RealizableComponent;
+import gravity.util.Message;
+import net.sf.cglib.core.AbstractClassGenerator;
+import net.sf.cglib.core.ClassEmitter;
+import net.sf.cglib.core.CodeEmitter;
+import net.sf.cglib.core.Constants;
+import net.sf.cglib.core.ReflectUtils;
+import net.sf.cglib.core.Signature;
+import net.sf.cglib.core.TypeUtils;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This is a {@link gravity.ComponentProxy}that generates, at runtime, a proxy class per component
+ * interface. Every method of the generated class obtains the concrete component instance via
+ * {@link AbstractComponentInvocationHandler#getConcreteComponentInstance()}and calls the same
+ * method on it directly through the component interface; so unlike the JDK and CgLib proxies,
+ * there is no argument boxing, reflection or callback in the call path. The <code>equals</code>,
+ * <code>hashCode</code> and <code>toString</code> methods are delegated to the concrete instance
+ * as well.
+ * <p>
+ * Exceptions thrown by the concrete instance propagate unaltered, as they do with the CgLib proxy.
+ * <p>
+ * The proxy class is generated in the class loader of the component interface, or the context class
+ * loader for interfaces loaded by the bootstrap loader, which therefore must be able to load the
+ * framework classes.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class GeneratedComponentProxy implements ComponentProxy
+{
+    private static final Class[]   CONSTRUCTOR_PARAMS = {Context.class, RealizableComponent.class};
+
+    private static final Type      BASE_TYPE;
+    private static final Signature CONSTRUCTOR_SIG;
+    private static final Signature GET_INSTANCE_SIG;
+    private static final Method[]  OBJECT_METHODS;
+
+    static
+    {
+        BASE_TYPE = Type.getType(AbstractComponentInvocationHandler.class);
+
+        CONSTRUCTOR_SIG = TypeUtils.parseConstructor("gravity.Context, gravity.RealizableComponent");
+
+        GET_INSTANCE_SIG = TypeUtils.parseSignature("Object getConcreteComponentInstance()");
+
+        try
+        {
+            OBJECT_METHODS = new Method[]{
+                Object.class.getMethod("equals", new Class[]{Object.class}),
+                Object.class.getMethod("hashCode", new Class[0]),
+                Object.class.getMethod("toString", new Class[0])};
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Generates the proxy class for a component interface. The generated classes are cached by
+     * CgLib per class loader and interface.
+     */
+    private static class Generator extends AbstractClassGenerator
+    {
+        private static final Source SOURCE = new Source(GeneratedComponentProxy.class.getName());
+
+        private Class               _compIntf;
+        private ClassLoader         _classLoader;
+
+        Generator(Class compIntf, ClassLoader classLoader)
+        {
+            super(SOURCE);
+
+            _compIntf = compIntf;
+            _classLoader = classLoader;
+
+            setNamePrefix(compIntf.getName());
+            setClassLoader(classLoader);
+        }
+
+        Class createClass()
+        {
+            return (Class) create(_compIntf.getName());
+        }
+
+        protected ClassLoader getDefaultClassLoader()
+        {
+            return _classLoader;
+        }
+
+        private void delegate(ClassEmitter ce, Method method, Type targetType)
+        {
+            Signature sig = ReflectUtils.getSignature(method);
+
+            CodeEmitter e = ce.begin_method(Constants.ACC_PUBLIC, sig,
+                ReflectUtils.getExceptionTypes(method), null);
+
+            e.load_this();
+            e.invoke_virtual(BASE_TYPE, GET_INSTANCE_SIG);
+            e.checkcast(targetType);
+            e.load_args();
+
+            if (targetType == Constants.TYPE_OBJECT)
+                e.invoke_virtual(targetType, sig);
+            else
+                e.invoke_interface(targetType, sig);
+
+            e.return_value();
+            e.end_method();
+        }
+
+        public void generateClass(ClassVisitor v)
+        {
+            Type intfType = Type.getType(_compIntf);
+
+            ClassEmitter ce = new ClassEmitter(v);
+
+            ce.begin_class(Constants.ACC_PUBLIC, getClassName(), BASE_TYPE,
+                new Type[]{intfType}, Constants.SOURCE_FILE);
+
+            CodeEmitter e = ce.begin_method(Constants.ACC_PUBLIC, CONSTRUCTOR_SIG, null, null);
+            e.load_this();
+            e.load_args();
+            e.super_invoke_constructor(CONSTRUCTOR_SIG);
+            e.return_value();
+            e.end_method();
+
+            // Methods inherited via multiple interfaces must be generated only once
+            Set signatures = new HashSet();
+
+            Method[] methods = _compIntf.getMethods();
+
+            for (int i = 0; i < methods.length; i++)
+            {
+                if (signatures.add(ReflectUtils.getSignature(methods[i])))
+                    delegate(ce, methods[i], intfType);
+            }
+
+            for (int i = 0; i < OBJECT_METHODS.length; i++)
+            {
+                if (signatures.add(ReflectUtils.getSignature(OBJECT_METHODS[i])))
+                    delegate(ce, OBJECT_METHODS[i], Constants.TYPE_OBJECT);
+            }
+
+            ce.end_class();
+        }
+
+        protected Object firstInstance(Class type)
+        {
+            return type;
+        }
+
+        protected Object nextInstance(Object instance)
+        {
+            return instance;
+        }
+    }
+
+    private static final ComponentProxyCache PROXY_CONSTRUCTORS = new ComponentProxyCache();
+
+    private Context                          _context;
+
+    public void initialize(Context context)
+    {
+        _context = context;
+    }
+
+    private Constructor getProxyConstructor(Class compIntf) throws Exception
+    {
+        ClassLoader classLoader = _context.getClassUtils().getClassLoader(compIntf);
+
+        Constructor proxyCtor = (Constructor) PROXY_CONSTRUCTORS.get(compIntf, classLoader);
+
+        if (proxyCtor == null)
+        {
+            Class proxyClass = new Generator(compIntf, classLoader).createClass();
+
+            proxyCtor = proxyClass.getConstructor(CONSTRUCTOR_PARAMS);
+
+            PROXY_CONSTRUCTORS.put(compIntf, classLoader, proxyCtor);
+        }
+
+        return proxyCtor;
+    }
+
+    /**
+     * This creates a new proxy instance for the provided component.
+     */
+    public Object newInstance(RealizableComponent comp)
+    {
+        try
+        {
+            Constructor proxyCtor = getProxyConstructor(comp.getInterface());
+
+            return proxyCtor.newInstance(new Object[]{_context, comp});
+        }
+        catch (Exception e)
+        {
+            throw _context.getExceptionWrapper().wrap(e, Message.CANNOT_CREATE_PROXY, comp);
+        }
+    }
+}
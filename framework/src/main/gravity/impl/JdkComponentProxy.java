@@ -19,18 +19,27 @@ import gravity.Context;
 import gravity.RealizableComponent;
 import gravity.util.Message;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 
 /**
  * This is the JDK version of {@link gravity.ComponentProxy}.
+ * <p>
+ * The constructor of the generated proxy class is cached per component interface and class loader,
+ * and shared by all the components, so creating a proxy is a single constructor call after the
+ * first one.
  * 
  * @author Harish Krishnaswamy
  * @version $Id: JdkComponentProxy.java,v 1.6 2005-10-06 21:59:29 harishkswamy Exp $
  */
 public class JdkComponentProxy implements ComponentProxy
 {
-    private Context _context;
+    private static final Class[]             CONSTRUCTOR_PARAMS = {InvocationHandler.class};
+
+    private static final ComponentProxyCache PROXY_CONSTRUCTORS = new ComponentProxyCache();
+
+    private Context                          _context;
 
     public void initialize(Context context)
     {
@@ -52,14 +61,27 @@ public class JdkComponentProxy implements ComponentProxy
     {
         try
         {
-            ClassLoader classLoader = _context.getClassUtils().getClassLoader(comp.getInterface());
+            Class compIntf = comp.getInterface();
+
+            ClassLoader classLoader = _context.getClassUtils().getClassLoader(compIntf);
+
+            InvocationHandler handler = newComponentInvocationHandler(comp);
+
+            Constructor proxyCtor = (Constructor) PROXY_CONSTRUCTORS.get(compIntf, classLoader);
+
+            if (proxyCtor != null)
+                return proxyCtor.newInstance(new Object[]{handler});
+
+            Object proxy = Proxy.newProxyInstance(classLoader, new Class[]{compIntf}, handler);
+
+            PROXY_CONSTRUCTORS.put(compIntf, classLoader,
+                proxy.getClass().getConstructor(CONSTRUCTOR_PARAMS));
 
-            return Proxy.newProxyInstance(classLoader, new Class[]{comp.getInterface()},
-                newComponentInvocationHandler(comp));
+            return proxy;
         }
         catch (Exception e)
         {
             throw _context.getExceptionWrapper().wrap(e, Message.CANNOT_CREATE_PROXY, comp);
         }
     }
-}
\ No newline at end of file
+}
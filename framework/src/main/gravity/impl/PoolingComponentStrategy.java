@@ -14,58 +14,438 @@
 
 package gravity.impl;
 
+import gravity.ComponentLease;
 import gravity.ComponentStrategy;
 import gravity.Context;
 import gravity.RealizableComponent;
+import gravity.util.Message;
 import gravity.util.Pool;
+import gravity.util.PoolConfiguration;
+
+import java.lang.ref.WeakReference;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This is a lazy loading strategy that will pool the generated concrete component instances. When
  * the use for the returned instance is over, it can be returned back to the pool via
- * {@link #collectComponentInstance(Object)}. The size of the pool can be configured by overriding
- * {@link gravity.impl.DefaultComponentInstanceBuilder#newPoolingStrategy(ComponentStrategy)}and
- * creating this strategy via {@link PoolingComponentStrategy(ComponentStrategy, int)}.
+ * {@link #collectComponentInstance(Object)}. Instances can also be leased via
+ * {@link #leaseComponentInstance(RealizableComponent)}, the lease returns the instance to the pool
+ * without looking it up. The loans that are never returned can be reported by sampling the loans
+ * for leak detection, via {@link #LEAK_SAMPLE_RATE_KEY}.
+ * <p>
+ * The pool is configured by the context items of this class by default. The pool of a particular
+ * component can be configured via {@link #configure(PoolConfiguration)}, the settings that are not
+ * set in the provided configuration are inherited from the context items.
+ * <p>
+ * The number of instances out on loan is not limited by default; when a limit is configured via
+ * {@link #MAX_ACTIVE_KEY}, requests for instances beyond the limit wait for instances to be
+ * collected, up to the time configured via {@link #MAX_WAIT_KEY}.
+ * <p>
+ * The pool holds up to its configured size of idle instances by default. An adaptive pool instead
+ * tracks the largest number of instances out on loan and the loans that find no idle instance, and
+ * grows or shrinks within its configured minimum and maximum size as the demand changes.
+ * <p>
+ * The pool can be filled ahead of the requests when the container is loaded, via
+ * {@link #prefill(RealizableComponent)}. A background maintenance thread, shared by all pools,
+ * evicts the instances that have been idle for too long and creates instances to keep the
+ * configured minimum number of idle instances in the pool. Idle instances can also be validated
+ * before they are loaned, the invalid instances are discarded.
  * 
  * @see gravity.util.Pool
+ * @see gravity.util.PoolConfiguration
  * @author Harish Krishnaswamy
  * @version $Id: PoolingComponentStrategy.java,v 1.5 2005-10-06 21:59:27 harishkswamy Exp $
  */
 public class PoolingComponentStrategy extends LazyLoadingComponentStrategy
 {
-    public static final String POOL_SIZE_KEY = "gravity.pool.size";
+    public static final String POOL_SIZE_KEY            = "gravity.pool.size";
+
+    /**
+     * Whether the number of idle instances a pool holds adapts to the demand, a {@link Boolean}.
+     */
+    public static final String ADAPTIVE_KEY             = "gravity.pool.adaptive";
+
+    /**
+     * The number of idle instances below which an adaptive pool does not shrink, an
+     * {@link Integer}.
+     */
+    public static final String MIN_SIZE_KEY             = "gravity.pool.minSize";
+
+    /**
+     * The maximum number of instances out on loan, an {@link Integer}; zero for no limit.
+     */
+    public static final String MAX_ACTIVE_KEY           = "gravity.pool.maxActive";
+
+    /**
+     * The maximum time, in milliseconds, to wait for an instance when the maximum number of
+     * instances are out on loan, a {@link Long}; a negative value waits indefinitely.
+     */
+    public static final String MAX_WAIT_KEY             = "gravity.pool.maxWait";
+
+    /**
+     * The number of idle instances the pool maintenance keeps in the pool, an {@link Integer}.
+     */
+    public static final String MIN_IDLE_KEY             = "gravity.pool.minIdle";
+
+    /**
+     * The time, in milliseconds, after which the pool maintenance evicts an idle instance, a
+     * {@link Long}; zero to never evict idle instances.
+     */
+    public static final String IDLE_TIMEOUT_KEY         = "gravity.pool.idleTimeout";
+
+    /**
+     * The time, in milliseconds, between two runs of the pool maintenance, a {@link Long}.
+     */
+    public static final String MAINTENANCE_INTERVAL_KEY = "gravity.pool.maintenanceInterval";
+
+    /**
+     * One in this many loans is sampled for leak detection, an {@link Integer}; zero to not detect
+     * leaks.
+     */
+    public static final String LEAK_SAMPLE_RATE_KEY     = "gravity.pool.leakSampleRate";
+
+    private static Timer       _maintenanceTimer;
+
+    /**
+     * This runs the maintenance of a pool. It holds the strategy weakly, so a strategy that is no
+     * longer in use is not kept from being garbage-collected; the task ends with the strategy.
+     */
+    private static class MaintenanceTask extends TimerTask
+    {
+        private WeakReference _strategyRef;
+
+        private MaintenanceTask(PoolingComponentStrategy strategy)
+        {
+            _strategyRef = new WeakReference(strategy);
+        }
 
-    private Pool               _pool;
+        public void run()
+        {
+            PoolingComponentStrategy strategy = (PoolingComponentStrategy) _strategyRef.get();
+
+            if (strategy == null)
+            {
+                cancel();
+
+                return;
+            }
+
+            try
+            {
+                strategy.maintain();
+            }
+            catch (RuntimeException e)
+            {
+                // A failure, from a component constructor for example, must not kill the timer, it
+                // runs the maintenance of all pools; the next run will try again.
+                strategy.maintenanceFailed(e);
+            }
+        }
+    }
+
+    private static synchronized Timer getMaintenanceTimer()
+    {
+        if (_maintenanceTimer == null)
+            _maintenanceTimer = new Timer(true);
+
+        return _maintenanceTimer;
+    }
+
+    private volatile PoolConfiguration   _configuration;
+    private volatile Pool                _pool;
+
+    /**
+     * This is the component whose instances are pooled, known from the first request or prefill.
+     * The pool maintenance needs it to create instances.
+     */
+    private volatile RealizableComponent _component;
+
+    private final AtomicLong             _maintenanceFailureCount = new AtomicLong();
+    private volatile Throwable           _lastMaintenanceFailure;
 
     public void initialize(Context context, ComponentStrategy strategy)
     {
         super.initialize(context, strategy);
 
-        int poolSize = ((Integer) context.getContextItem(POOL_SIZE_KEY)).intValue();
+        configure(new PoolConfiguration());
+    }
+
+    private PoolConfiguration newDefaultConfiguration()
+    {
+        PoolConfiguration config = new PoolConfiguration();
+
+        config.setMaxSize(((Integer) _context.getContextItem(POOL_SIZE_KEY)).intValue());
+        config.setMinSize(((Integer) _context.getContextItem(MIN_SIZE_KEY)).intValue());
+        config.setAdaptive(((Boolean) _context.getContextItem(ADAPTIVE_KEY)).booleanValue());
+        config.setMaxActive(((Integer) _context.getContextItem(MAX_ACTIVE_KEY)).intValue());
+        config.setMaxWait(((Long) _context.getContextItem(MAX_WAIT_KEY)).longValue());
+        config.setMinIdle(((Integer) _context.getContextItem(MIN_IDLE_KEY)).intValue());
+        config.setIdleTimeout(((Long) _context.getContextItem(IDLE_TIMEOUT_KEY)).longValue());
+        config.setMaintenanceInterval(((Long) _context.getContextItem(MAINTENANCE_INTERVAL_KEY))
+            .longValue());
+        config.setLeakSampleRate(((Integer) _context.getContextItem(LEAK_SAMPLE_RATE_KEY))
+            .intValue());
 
-        _pool = new Pool(poolSize);
+        return config;
     }
 
-    public Object getComponentInstance(RealizableComponent component)
+    /**
+     * Configures the pool of this strategy with the provided configuration; the settings that are
+     * not set in the provided configuration are inherited from the context items. This must be
+     * done before the strategy serves any instances, the pool is replaced.
+     */
+    public synchronized void configure(PoolConfiguration config)
     {
-        Object compInst = _pool.loan();
+        _configuration = config.inherit(newDefaultConfiguration());
+
+        Pool pool = new Pool(_configuration.getMaxSize(), _configuration.getMaxActive());
+        pool.setLeakSampleRate(_configuration.getLeakSampleRate());
 
-        if (compInst == null)
+        // An adaptive pool starts small and grows with the demand
+        if (_configuration.isAdaptive())
+            pool.resize(getMinCapacity());
+
+        _pool = pool;
+    }
+
+    /**
+     * @return Returns the capacity below which an adaptive pool does not shrink.
+     */
+    private int getMinCapacity()
+    {
+        return Math.max(_configuration.getMinSize(), _configuration.getMinIdle());
+    }
+
+    /**
+     * Records the component whose instances are pooled and starts the pool maintenance, if the
+     * configuration requires any.
+     */
+    private void attach(RealizableComponent component)
+    {
+        if (_component != null)
+            return;
+
+        synchronized (this)
         {
-            compInst = super.getComponentInstance(component);
+            if (_component != null)
+                return;
+
+            _component = component;
+
+            long interval = _configuration.getMaintenanceInterval();
+
+            if (_configuration.requiresMaintenance())
+                getMaintenanceTimer().schedule(new MaintenanceTask(this), interval, interval);
+        }
+    }
 
-            _pool.loaned(compInst);
+    /**
+     * Fills the pool with new idle instances up to the provided number of idle instances, or until
+     * the pool is full.
+     */
+    private void fill(RealizableComponent component, int idleCount)
+    {
+        while (_pool.getIdleCount() < idleCount)
+        {
+            if (!_pool.addIdle(super.getComponentInstance(component)))
+                return;
         }
+    }
+
+    /**
+     * Fills the pool with the configured number of instances, prefill size or minimum idle
+     * instances whichever is larger, and starts the pool maintenance. The container prefills the
+     * pools when it is loaded.
+     */
+    public void prefill(RealizableComponent component)
+    {
+        attach(component);
 
-        return compInst;
+        fill(component, Math.max(_configuration.getPrefillSize(), _configuration.getMinIdle()));
     }
 
+    /**
+     * Adapts the capacity of an adaptive pool to the demand, evicts the instances that have been
+     * idle for too long and then creates instances to keep the minimum number of idle instances.
+     * This is run periodically by the maintenance thread, which records its failures, see
+     * {@link #getLastMaintenanceFailure()}.
+     */
+    protected void maintain()
+    {
+        PoolConfiguration config = _configuration;
+
+        if (config.isAdaptive())
+            _pool.adapt(getMinCapacity());
+
+        if (config.getIdleTimeout() > 0)
+            _pool.evict(config.getIdleTimeout(), config.getMinIdle());
+
+        fill(_component, config.getMinIdle());
+    }
+
+    private void maintenanceFailed(RuntimeException e)
+    {
+        _lastMaintenanceFailure = e;
+
+        _maintenanceFailureCount.incrementAndGet();
+    }
+
+    private void reserveLoan(RealizableComponent component)
+    {
+        try
+        {
+            if (!_pool.reserveLoan(_configuration.getMaxWait()))
+                throw _context.getExceptionWrapper().wrap(new TimeoutException(),
+                    Message.CANNOT_LOAN_POOLED_INSTANCE, component);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+
+            throw _context.getExceptionWrapper().wrap(e, Message.CANNOT_LOAN_POOLED_INSTANCE,
+                component);
+        }
+    }
+
+    /**
+     * @return Returns true if the provided instance is valid, or when the instances are not
+     *         validated.
+     */
+    private boolean isValid(Object compInst)
+    {
+        String validationMethod = _configuration.getValidationMethod();
+
+        if (validationMethod == null)
+            return true;
+
+        Object valid = _context.getReflectUtils().invokeMethod(compInst, validationMethod, null);
+
+        return Boolean.TRUE.equals(valid);
+    }
+
+    /**
+     * @return Returns the loan of a valid idle instance from the pool, or null if there is none.
+     *         The invalid instances are discarded.
+     */
+    private Pool.Loan borrowValid()
+    {
+        Pool.Loan loan;
+
+        while ((loan = _pool.borrow()) != null)
+        {
+            boolean valid = false;
+
+            try
+            {
+                valid = isValid(loan.getItem());
+            }
+            finally
+            {
+                if (!valid)
+                    _pool.discardLoan(loan);
+            }
+
+            if (valid)
+                return loan;
+        }
+
+        return null;
+    }
+
+    /**
+     * Loans a valid idle instance from the pool, or a new instance when there is none.
+     */
+    private Pool.Loan loan(RealizableComponent component)
+    {
+        attach(component);
+
+        reserveLoan(component);
+
+        try
+        {
+            Pool.Loan loan = borrowValid();
+
+            if (loan == null)
+                loan = _pool.register(super.getComponentInstance(component));
+
+            return loan;
+        }
+        catch (RuntimeException e)
+        {
+            _pool.cancelLoan();
+
+            throw e;
+        }
+    }
+
+    public Object getComponentInstance(RealizableComponent component)
+    {
+        return loan(component).getItem();
+    }
+
+    /**
+     * @return Returns a lease of a pooled instance, that returns the instance to the pool without
+     *         looking it up when closed.
+     */
+    public ComponentLease leaseComponentInstance(RealizableComponent component)
+    {
+        return new DefaultComponentLease(_pool, loan(component));
+    }
+
+    /**
+     * Returns the provided instance to the pool. When the provided instance is a component proxy,
+     * the concrete instance it is bound to is returned to the pool and detached from the proxy.
+     */
     public void collectComponentInstance(Object compInst)
     {
-        _pool.collect(compInst);
+        _pool.collect(AbstractComponentInvocationHandler.detachConcreteInstance(compInst));
+    }
+
+    /**
+     * @return Returns the pool of this strategy, for its statistics.
+     */
+    public Pool getPool()
+    {
+        return _pool;
+    }
+
+    /**
+     * @return Returns the configuration of the pool of this strategy.
+     */
+    public PoolConfiguration getConfiguration()
+    {
+        return _configuration;
+    }
+
+    /**
+     * @return Returns the number of maintenance runs that failed.
+     */
+    public long getMaintenanceFailureCount()
+    {
+        return _maintenanceFailureCount.get();
+    }
+
+    /**
+     * @return Returns the failure of the last failed maintenance run, null if there was none.
+     */
+    public Throwable getLastMaintenanceFailure()
+    {
+        return _lastMaintenanceFailure;
+    }
+
+    /**
+     * The pooled instances are loaned again.
+     */
+    public boolean buildsNewInstances()
+    {
+        return false;
     }
 
     public String toString()
     {
         return " [Pooling" + decoratedStrategyToString() + "] ";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,366 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentInstanceBuilder;
+import gravity.ComponentStrategy;
+import gravity.Context;
+import gravity.RealizableComponent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a lazy loading strategy for components with expensive constructors. Every request gets
+ * a new instance, as with the plain lazy loading strategy, but the instances are built ahead of
+ * time, in the background, into a bounded buffer; a request simply takes an instance from the
+ * buffer, and only builds one itself when the buffer is empty.
+ * <p>
+ * The depth of the buffer adapts to the demand: it doubles every time a request finds the buffer
+ * empty, and shrinks by one after a run of requests that all found an instance, between the
+ * minimum and maximum depths configured via {@link #MIN_DEPTH_KEY} and {@link #MAX_DEPTH_KEY}.
+ * <p>
+ * The instances are built on a background thread, components that depend on the building thread
+ * must not be prefetched. When a background build fails, the failure is kept, see
+ * {@link #getLastPrefetchFailure()}, and the buffer is refilled again on the next request; errors
+ * are rethrown on the background thread after they are kept.
+ * <p>
+ * The buffered instances are never handed out once the buffer is drained via {@link #drain()},
+ * when the component is shut down or this strategy is dropped; their shutdown callbacks are
+ * invoked when the decorated strategies build a new instance for every request, otherwise they are
+ * simply collected, as with {@link ScopedComponentStrategy}.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class PrefetchingComponentStrategy extends LazyLoadingComponentStrategy
+{
+    /**
+     * The minimum depth of the buffer, an {@link Integer}.
+     */
+    public static final String     MIN_DEPTH_KEY = "gravity.prefetch.minDepth";
+
+    /**
+     * The maximum depth of the buffer, an {@link Integer}.
+     */
+    public static final String     MAX_DEPTH_KEY = "gravity.prefetch.maxDepth";
+
+    private static ExecutorService _prefetchExecutor;
+
+    private static synchronized ExecutorService getPrefetchExecutor()
+    {
+        if (_prefetchExecutor == null)
+            _prefetchExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "gravity-prefetch");
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+
+        return _prefetchExecutor;
+    }
+
+    private int                         _minDepth;
+    private int                         _maxDepth;
+
+    private final ConcurrentLinkedQueue _buffer        = new ConcurrentLinkedQueue();
+    private final AtomicInteger         _bufferedCount = new AtomicInteger();
+
+    private volatile int                _depth;
+
+    /**
+     * The number of requests, that found an instance, since the last request that did not.
+     */
+    private final AtomicInteger         _hitRun        = new AtomicInteger();
+
+    private final AtomicBoolean         _prefetching   = new AtomicBoolean();
+
+    private final AtomicLong            _hitCount      = new AtomicLong();
+    private final AtomicLong            _missCount     = new AtomicLong();
+    private final AtomicLong            _failureCount  = new AtomicLong();
+    private volatile Throwable          _lastFailure;
+
+    /**
+     * True if the decorated strategies build a new instance for every request.
+     */
+    private boolean                     _ownsInstances;
+
+    /**
+     * This is the component whose instances are buffered, and the builder that built them, known
+     * from the first request. The component may be given another builder, so the instances are
+     * shut down through the one that built them.
+     */
+    private volatile Object[]           _owner;
+
+    /**
+     * The number of times the buffer was drained; a fill that started before a drain must not
+     * buffer its instances. This is only changed, and checked before buffering, under the lock of
+     * the buffer.
+     */
+    private int                         _drainCount;
+
+    public void initialize(Context context, ComponentStrategy strategy)
+    {
+        super.initialize(context, strategy);
+
+        _minDepth = Math.max(1, ((Integer) context.getContextItem(MIN_DEPTH_KEY)).intValue());
+        _maxDepth = Math.max(_minDepth, ((Integer) context.getContextItem(MAX_DEPTH_KEY))
+            .intValue());
+
+        _depth = _minDepth;
+
+        _ownsInstances = decoratedStrategyBuildsNewInstances();
+    }
+
+    private Object newInstance(RealizableComponent component)
+    {
+        return super.getComponentInstance(component);
+    }
+
+    /**
+     * Fills the buffer up to its depth in the background, unless it is being filled already.
+     */
+    private void prefetch(final RealizableComponent component)
+    {
+        if (_bufferedCount.get() >= _depth || !_prefetching.compareAndSet(false, true))
+            return;
+
+        final int drainCount = getDrainCount();
+
+        getPrefetchExecutor().execute(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    while (_bufferedCount.get() < _depth)
+                    {
+                        Object compInst = newInstance(component);
+
+                        if (!buffer(compInst, drainCount))
+                        {
+                            release(compInst);
+
+                            return;
+                        }
+                    }
+                }
+                catch (Throwable t)
+                {
+                    _lastFailure = t;
+
+                    _failureCount.incrementAndGet();
+
+                    if (t instanceof Error)
+                        throw (Error) t;
+                }
+                finally
+                {
+                    _prefetching.set(false);
+                }
+            }
+        });
+    }
+
+    private int getDrainCount()
+    {
+        synchronized (_buffer)
+        {
+            return _drainCount;
+        }
+    }
+
+    /**
+     * @return Returns true if the provided instance is buffered, false if the buffer was drained
+     *         since the fill started.
+     */
+    private boolean buffer(Object compInst, int drainCount)
+    {
+        synchronized (_buffer)
+        {
+            if (_drainCount != drainCount)
+                return false;
+
+            _buffer.offer(compInst);
+
+            _bufferedCount.incrementAndGet();
+
+            return true;
+        }
+    }
+
+    private void release(Object compInst)
+    {
+        Object[] owner = _owner;
+
+        if (_ownsInstances)
+            ((ComponentInstanceBuilder) owner[1]).shutdownInstance(
+                (RealizableComponent) owner[0], compInst);
+
+        super.collectComponentInstance(compInst);
+    }
+
+    /**
+     * Drains the buffer, when the component is shut down or this strategy is dropped, and shuts
+     * the buffered instances down. The instances that are being built in the background are shut
+     * down once they are built. Every instance is released even if some fail to release, and the
+     * first failure is thrown afterwards.
+     */
+    public void drain()
+    {
+        List drained = new ArrayList();
+
+        synchronized (_buffer)
+        {
+            _drainCount++;
+
+            Object compInst;
+
+            while ((compInst = _buffer.poll()) != null)
+            {
+                _bufferedCount.decrementAndGet();
+
+                drained.add(compInst);
+            }
+        }
+
+        RuntimeException failure = null;
+
+        for (int i = 0; i < drained.size(); i++)
+        {
+            try
+            {
+                release(drained.get(i));
+            }
+            catch (RuntimeException e)
+            {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private void adapt(boolean hit)
+    {
+        int depth = _depth;
+
+        if (!hit)
+        {
+            _hitRun.set(0);
+
+            _depth = Math.min(_maxDepth, depth * 2);
+        }
+        else if (_hitRun.incrementAndGet() >= depth * 4 && depth > _minDepth)
+        {
+            _hitRun.set(0);
+
+            _depth = depth - 1;
+        }
+    }
+
+    /**
+     * @return Returns an instance from the buffer, or a new instance if the buffer is empty.
+     */
+    public Object getComponentInstance(RealizableComponent component)
+    {
+        if (_owner == null)
+            _owner = new Object[]{component, component.getFactory()};
+
+        Object compInst = _buffer.poll();
+
+        boolean hit = compInst != null;
+
+        if (hit)
+        {
+            _bufferedCount.decrementAndGet();
+            _hitCount.incrementAndGet();
+        }
+        else
+            _missCount.incrementAndGet();
+
+        adapt(hit);
+
+        prefetch(component);
+
+        return hit ? compInst : newInstance(component);
+    }
+
+    /**
+     * @return Returns the current depth of the buffer.
+     */
+    public int getDepth()
+    {
+        return _depth;
+    }
+
+    /**
+     * @return Returns the number of instances in the buffer.
+     */
+    public int getBufferedCount()
+    {
+        return _bufferedCount.get();
+    }
+
+    /**
+     * @return Returns the number of requests that were served from the buffer.
+     */
+    public long getHitCount()
+    {
+        return _hitCount.get();
+    }
+
+    /**
+     * @return Returns the number of requests that found the buffer empty.
+     */
+    public long getMissCount()
+    {
+        return _missCount.get();
+    }
+
+    /**
+     * @return Returns the number of background fills that failed.
+     */
+    public long getPrefetchFailureCount()
+    {
+        return _failureCount.get();
+    }
+
+    /**
+     * @return Returns the failure of the last failed background fill, null if there was none.
+     */
+    public Throwable getLastPrefetchFailure()
+    {
+        return _lastFailure;
+    }
+
+    public String toString()
+    {
+        return " [Prefetching" + decoratedStrategyToString() + "] ";
+    }
+}
@@ -0,0 +1,133 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.RealizableComponent;
+
+import java.lang.ref.Reference;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is a singleton strategy for large components that can be rebuilt on demand. The instance is
+ * held through a reference that the garbage collector may clear, and rebuilt on the next call
+ * after it is cleared. Only one caller rebuilds the instance; the concurrent callers wait for it
+ * and share the rebuilt instance.
+ * <p>
+ * This strategy is dispatching, the proxies never hold the instance; callers that hold on to the
+ * concrete instance keep it from being cleared.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public abstract class ReclaimableSingletonComponentStrategy extends DispatchingComponentStrategy
+{
+    private volatile Reference _reference;
+
+    private final SingleFlight _flight     = new SingleFlight();
+
+    private final AtomicLong   _buildCount = new AtomicLong();
+
+    /**
+     * @return Returns a new reference to the provided instance.
+     */
+    protected abstract Reference newReference(Object compInst);
+
+    private Object dereference()
+    {
+        Reference reference = _reference;
+
+        return reference == null ? null : reference.get();
+    }
+
+    private Object build(RealizableComponent component)
+    {
+        try
+        {
+            // Another caller may have built the instance before this one was admitted
+            Object compInst = dereference();
+
+            if (compInst == null)
+            {
+                compInst = super.getComponentInstance(component);
+
+                _reference = newReference(compInst);
+
+                _buildCount.incrementAndGet();
+            }
+
+            return compInst;
+        }
+        finally
+        {
+            _flight.release();
+        }
+    }
+
+    public Object getComponentInstance(RealizableComponent component)
+    {
+        Object compInst = dereference();
+
+        while (compInst == null)
+        {
+            if (_flight.acquire(_context, component))
+                return build(component);
+
+            compInst = dereference();
+        }
+
+        return compInst;
+    }
+
+    /**
+     * The instance is shared, this does nothing.
+     */
+    public void collectComponentInstance(Object compInst)
+    {
+    }
+
+    /**
+     * @return Returns the instance if it is built and has not been cleared, otherwise null.
+     */
+    public Object getRealizedInstance()
+    {
+        return dereference();
+    }
+
+    /**
+     * @return Returns the number of times the instance was built.
+     */
+    public long getBuildCount()
+    {
+        return _buildCount.get();
+    }
+
+    /**
+     * @return Returns the number of times the instance was rebuilt after it was cleared.
+     */
+    public long getRebuildCount()
+    {
+        long count = _buildCount.get();
+
+        return count == 0 ? 0 : count - 1;
+    }
+
+    /**
+     * The instance is shared until it is reclaimed.
+     */
+    public boolean buildsNewInstances()
+    {
+        return false;
+    }
+}
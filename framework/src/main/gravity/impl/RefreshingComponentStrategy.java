@@ -0,0 +1,395 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentStrategy;
+import gravity.Context;
+import gravity.RealizableComponent;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This strategy serves a shared instance that is rebuilt once its time to live expires, for
+ * components built from slowly changing data like configuration snapshots and lookup tables.
+ * <p>
+ * The instance is rebuilt in the background, by the decorated strategy, when it is requested
+ * within the refresh-ahead period before its expiry, and swapped in once it is built. Callers never
+ * wait for a rebuild: until the new instance is swapped in they are served the current one, even
+ * after it has expired. Only the very first build is done by the caller. When a rebuild fails, the
+ * current instance is kept and the next request tries again.
+ * <p>
+ * This strategy is dispatching, so the proxies pick up the new instance on their next call. The
+ * replaced instance is retired once the calls that may still be using it had time to finish, after
+ * the delay configured via {@link #RETIREMENT_DELAY_KEY}: its shutdown callbacks are invoked, to
+ * release its resources, and it is collected by the decorated strategy. When the decorated
+ * strategies share their instances, a singleton or a pool for example, the replaced instance is
+ * only collected.
+ * <p>
+ * The time to live and the refresh-ahead period are configured via {@link #TIME_TO_LIVE_KEY} and
+ * {@link #REFRESH_AHEAD_KEY}, or per component via
+ * {@link gravity.plugins.RefreshingComponentStrategyType}.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class RefreshingComponentStrategy extends DispatchingComponentStrategy
+{
+    /**
+     * The time, in milliseconds, after which an instance expires, a {@link Long}.
+     */
+    public static final String     TIME_TO_LIVE_KEY     = "gravity.refresh.timeToLive";
+
+    /**
+     * The time, in milliseconds, before the expiry of an instance from which it is rebuilt on
+     * request, a {@link Long}.
+     */
+    public static final String     REFRESH_AHEAD_KEY    = "gravity.refresh.refreshAhead";
+
+    /**
+     * The time, in milliseconds, after which a replaced instance is retired, a {@link Long}.
+     */
+    public static final String     RETIREMENT_DELAY_KEY = "gravity.refresh.retirementDelay";
+
+    private static ExecutorService _refreshExecutor;
+
+    private static Timer           _retirementTimer;
+
+    private static synchronized ExecutorService getRefreshExecutor()
+    {
+        if (_refreshExecutor == null)
+            _refreshExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+            {
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "gravity-refresh");
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+
+        return _refreshExecutor;
+    }
+
+    private static synchronized Timer getRetirementTimer()
+    {
+        if (_retirementTimer == null)
+            _retirementTimer = new Timer(true);
+
+        return _retirementTimer;
+    }
+
+    /**
+     * This is an instance along with the time it was built.
+     */
+    private static final class Entry
+    {
+        private final Object _instance;
+        private final long   _builtAt;
+
+        private Entry(Object instance, long builtAt)
+        {
+            _instance = instance;
+            _builtAt = builtAt;
+        }
+    }
+
+    private volatile long        _timeToLive;
+    private volatile long        _refreshAhead;
+    private long                 _retirementDelay;
+
+    /**
+     * True if the decorated strategies build a new instance on every refresh.
+     */
+    private boolean              _ownsInstances;
+
+    private volatile Entry       _entry;
+
+    private final AtomicBoolean  _refreshing        = new AtomicBoolean();
+
+    private final AtomicLong     _refreshCount      = new AtomicLong();
+    private final AtomicLong     _failureCount      = new AtomicLong();
+    private final AtomicLong     _staleServedCount  = new AtomicLong();
+    private final AtomicLong     _totalRefreshNanos = new AtomicLong();
+    private volatile long        _lastRefreshNanos;
+    private volatile Throwable   _lastFailure;
+
+    private final AtomicLong     _retiredCount      = new AtomicLong();
+    private volatile Throwable   _lastRetirementFailure;
+
+    public void initialize(Context context, ComponentStrategy strategy)
+    {
+        super.initialize(context, strategy);
+
+        configure(((Long) context.getContextItem(TIME_TO_LIVE_KEY)).longValue(),
+            ((Long) context.getContextItem(REFRESH_AHEAD_KEY)).longValue());
+
+        _retirementDelay = ((Long) context.getContextItem(RETIREMENT_DELAY_KEY)).longValue();
+        _ownsInstances = decoratedStrategyBuildsNewInstances();
+    }
+
+    /**
+     * Applies the provided time to live and refresh-ahead period, in milliseconds; the
+     * refresh-ahead period is capped at the time to live.
+     */
+    public void configure(long timeToLive, long refreshAhead)
+    {
+        _timeToLive = timeToLive;
+        _refreshAhead = Math.max(0, Math.min(refreshAhead, timeToLive));
+    }
+
+    private Entry build(RealizableComponent component)
+    {
+        long start = System.nanoTime();
+
+        Object compInst = super.getComponentInstance(component);
+
+        long nanos = System.nanoTime() - start;
+
+        _lastRefreshNanos = nanos;
+        _totalRefreshNanos.addAndGet(nanos);
+
+        return new Entry(compInst, System.currentTimeMillis());
+    }
+
+    private synchronized Entry buildFirst(RealizableComponent component)
+    {
+        if (_entry == null)
+            _entry = build(component);
+
+        return _entry;
+    }
+
+    private void shutdown(RealizableComponent component, Object compInst)
+    {
+        try
+        {
+            if (_ownsInstances)
+                component.shutdownInstance(compInst);
+
+            super.collectComponentInstance(compInst);
+        }
+        catch (Throwable t)
+        {
+            // The instance is dropped either way
+            _lastRetirementFailure = t;
+        }
+        finally
+        {
+            _retiredCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Shuts down the replaced instance after the retirement delay.
+     */
+    private void retire(final RealizableComponent component, final Object compInst)
+    {
+        if (_retirementDelay <= 0)
+        {
+            shutdown(component, compInst);
+
+            return;
+        }
+
+        getRetirementTimer().schedule(new TimerTask()
+        {
+            public void run()
+            {
+                shutdown(component, compInst);
+            }
+        }, _retirementDelay);
+    }
+
+    private void refresh(final RealizableComponent component)
+    {
+        // Only one refresh at a time
+        if (!_refreshing.compareAndSet(false, true))
+            return;
+
+        Runnable refresh = new Runnable()
+        {
+            public void run()
+            {
+                Object replaced = _entry._instance;
+
+                try
+                {
+                    _entry = build(component);
+
+                    _refreshCount.incrementAndGet();
+                }
+                catch (Throwable t)
+                {
+                    _lastFailure = t;
+
+                    _failureCount.incrementAndGet();
+                }
+                finally
+                {
+                    _refreshing.set(false);
+                }
+
+                if (_entry._instance != replaced)
+                    retire(component, replaced);
+            }
+        };
+
+        try
+        {
+            getRefreshExecutor().execute(refresh);
+        }
+        catch (RuntimeException e)
+        {
+            // The refresh was rejected; the current instance is served and the next request will
+            // try again.
+            _lastFailure = e;
+
+            _failureCount.incrementAndGet();
+
+            _refreshing.set(false);
+        }
+    }
+
+    public Object getComponentInstance(RealizableComponent component)
+    {
+        Entry entry = _entry;
+
+        if (entry == null)
+            return buildFirst(component)._instance;
+
+        long age = System.currentTimeMillis() - entry._builtAt;
+
+        if (age >= _timeToLive - _refreshAhead)
+        {
+            if (age >= _timeToLive)
+                _staleServedCount.incrementAndGet();
+
+            refresh(component);
+        }
+
+        return entry._instance;
+    }
+
+    /**
+     * The instance is shared, this does nothing.
+     */
+    public void collectComponentInstance(Object compInst)
+    {
+    }
+
+    public long getTimeToLive()
+    {
+        return _timeToLive;
+    }
+
+    public long getRefreshAhead()
+    {
+        return _refreshAhead;
+    }
+
+    /**
+     * @return Returns the age, in milliseconds, of the current instance; -1 if there is none yet.
+     */
+    public long getAge()
+    {
+        Entry entry = _entry;
+
+        return entry == null ? -1 : System.currentTimeMillis() - entry._builtAt;
+    }
+
+    /**
+     * @return Returns the number of successful background rebuilds.
+     */
+    public long getRefreshCount()
+    {
+        return _refreshCount.get();
+    }
+
+    /**
+     * @return Returns the number of background rebuilds that failed or could not be scheduled.
+     */
+    public long getRefreshFailureCount()
+    {
+        return _failureCount.get();
+    }
+
+    /**
+     * @return Returns the failure of the last failed rebuild, null if there was none.
+     */
+    public Throwable getLastRefreshFailure()
+    {
+        return _lastFailure;
+    }
+
+    /**
+     * @return Returns the number of replaced instances that were retired.
+     */
+    public long getRetiredCount()
+    {
+        return _retiredCount.get();
+    }
+
+    /**
+     * @return Returns the failure of the last failed retirement, null if there was none.
+     */
+    public Throwable getLastRetirementFailure()
+    {
+        return _lastRetirementFailure;
+    }
+
+    /**
+     * @return Returns the number of times an expired instance was served while it was rebuilt.
+     */
+    public long getStaleServedCount()
+    {
+        return _staleServedCount.get();
+    }
+
+    /**
+     * @return Returns the time, in milliseconds, the last build took.
+     */
+    public long getLastRefreshMillis()
+    {
+        return _lastRefreshNanos / 1000000;
+    }
+
+    /**
+     * @return Returns the total time, in milliseconds, all the builds took.
+     */
+    public long getTotalRefreshMillis()
+    {
+        return _totalRefreshNanos.get() / 1000000;
+    }
+
+    /**
+     * The instance is shared until it is replaced.
+     */
+    public boolean buildsNewInstances()
+    {
+        return false;
+    }
+
+    public String toString()
+    {
+        return " [Refreshing" + decoratedStrategyToString() + "] ";
+    }
+}
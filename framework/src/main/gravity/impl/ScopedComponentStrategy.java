@@ -0,0 +1,109 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentStrategy;
+import gravity.Context;
+import gravity.RealizableComponent;
+import gravity.UsageException;
+import gravity.util.Message;
+
+/**
+ * This strategy serves one instance per {@link gravity.ComponentScope}, the current scope of the
+ * executing thread. The instances are held by their scope and collected when the scope is closed.
+ * The shutdown callbacks are invoked on the instances only when the decorated strategies build a
+ * new instance for every scope, as with plain lazy loading; the instances of the other strategies,
+ * a singleton or a pool for example, are shared beyond the scope and are simply collected.
+ * <p>
+ * Unlike {@link ThreadLocalComponentStrategy}, the instances do not outlive the unit of work, so
+ * this is the strategy of choice for request or task specific components on pooled threads. The
+ * instances must only be obtained within a scope.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ScopedComponentStrategy extends DispatchingComponentStrategy
+{
+    /**
+     * True if the decorated strategies build a new instance for every scope.
+     */
+    private boolean _ownsInstances;
+
+    public void initialize(Context context, ComponentStrategy strategy)
+    {
+        super.initialize(context, strategy);
+
+        _ownsInstances = decoratedStrategyBuildsNewInstances();
+    }
+
+    public Object getComponentInstance(RealizableComponent component)
+    {
+        DefaultComponentScope scope = (DefaultComponentScope) _context.getMutableContainer()
+            .getCurrentScope();
+
+        if (scope == null)
+            throw _context.getExceptionWrapper().wrap(new UsageException(),
+                Message.SCOPE_NOT_OPEN, component);
+
+        Object compInst = scope.getInstance(this);
+
+        if (compInst == null)
+        {
+            compInst = super.getComponentInstance(component);
+
+            // The scope was closed by another thread in the meantime
+            if (!scope.putInstance(this, component, compInst))
+            {
+                releaseInstance(component, compInst);
+
+                throw _context.getExceptionWrapper().wrap(new UsageException(),
+                    Message.SCOPE_NOT_OPEN, component);
+            }
+        }
+
+        return compInst;
+    }
+
+    /**
+     * This is invoked by the scope that holds the instance when it is closed.
+     */
+    void releaseInstance(RealizableComponent component, Object compInst)
+    {
+        if (_ownsInstances)
+            component.shutdownInstance(compInst);
+
+        super.collectComponentInstance(compInst);
+    }
+
+    /**
+     * The instances are collected when their scope is closed, this does nothing.
+     */
+    public void collectComponentInstance(Object compInst)
+    {
+    }
+
+    /**
+     * The instance is shared by the scope.
+     */
+    public boolean buildsNewInstances()
+    {
+        return false;
+    }
+
+    public String toString()
+    {
+        return " [Scoped" + decoratedStrategyToString() + "] ";
+    }
+}
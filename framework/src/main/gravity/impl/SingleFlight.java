@@ -0,0 +1,123 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.Context;
+import gravity.RealizableComponent;
+import gravity.UsageException;
+import gravity.util.Message;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This admits one thread at a time to build the instance of a singleton component, and parks the
+ * others until it is done. No lock is held while the instance is built, so the builder is free to
+ * build the dependencies of the component; the callers that would otherwise wait for each other
+ * forever, because of a dependency cycle between singletons, fail instead.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+class SingleFlight
+{
+    /**
+     * The flights the parked threads are waiting for, keyed by thread; this is the wait-for graph
+     * of all flights in which cycles are detected.
+     */
+    private static final Map WAITING = new ConcurrentHashMap();
+
+    private volatile Thread  _builder;
+
+    /**
+     * Admits the current thread to build the instance, or parks it until the thread that is
+     * building the instance is done.
+     * 
+     * @return Returns true if the current thread must build the instance and then
+     *         {@link #release()}the flight; false after the current thread was parked, the
+     *         instance may have been built meanwhile.
+     * @throws WrapperException
+     *             {@link Message#SINGLETON_DEPENDENCY_CYCLE}when the current thread would wait
+     *             for itself; {@link Message#CANNOT_AWAIT_SINGLETON_INSTANCE}when it is
+     *             interrupted.
+     */
+    synchronized boolean acquire(Context context, RealizableComponent component)
+    {
+        Thread current = Thread.currentThread();
+
+        if (_builder == null)
+        {
+            _builder = current;
+
+            return true;
+        }
+
+        WAITING.put(current, this);
+
+        try
+        {
+            if (isWaitingFor(current))
+                throw context.getExceptionWrapper().wrap(new UsageException(),
+                    Message.SINGLETON_DEPENDENCY_CYCLE, component);
+
+            wait();
+
+            return false;
+        }
+        catch (InterruptedException e)
+        {
+            current.interrupt();
+
+            throw context.getExceptionWrapper().wrap(e, Message.CANNOT_AWAIT_SINGLETON_INSTANCE,
+                component);
+        }
+        finally
+        {
+            WAITING.remove(current);
+        }
+    }
+
+    /**
+     * Follows the builders, through the flights they are waiting for, back to the provided thread.
+     * The walk is bounded, as the graph may change under it.
+     */
+    private boolean isWaitingFor(Thread thread)
+    {
+        Thread builder = _builder;
+
+        for (int i = WAITING.size(); builder != null && i >= 0; i--)
+        {
+            if (builder == thread)
+                return true;
+
+            SingleFlight flight = (SingleFlight) WAITING.get(builder);
+
+            builder = flight == null ? null : flight._builder;
+        }
+
+        return false;
+    }
+
+    /**
+     * Ends the flight of the current thread, whether it built the instance or failed to, and
+     * unparks the waiting threads; when the build failed one of them will build the instance.
+     */
+    synchronized void release()
+    {
+        _builder = null;
+
+        notifyAll();
+    }
+}
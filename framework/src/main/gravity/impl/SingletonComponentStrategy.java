@@ -17,27 +17,72 @@ package gravity.impl;
 import gravity.RealizableComponent;
 
 /**
+ * This is the lazy loading strategy for components that have a single instance. The instance is
+ * built once, on the first call; the concurrent first callers wait for it and share it.
+ * 
+ * @see SingleFlight
  * @author Harish Krishnaswamy
  * @version $Id: SingletonComponentStrategy.java,v 1.4 2005-10-06 21:59:28 harishkswamy Exp $
  */
 public class SingletonComponentStrategy extends LazyLoadingComponentStrategy
 {
-    private Object _componentInstance;
+    /**
+     * This is volatile as the realized instance may be read without a lock via
+     * {@link #getRealizedInstance()}.
+     */
+    private volatile Object    _componentInstance;
 
-    private synchronized void cache(Object componentInstance)
+    private final SingleFlight _flight = new SingleFlight();
+
+    private Object build(RealizableComponent component)
     {
-        if (_componentInstance == null)
-            _componentInstance = componentInstance;
+        try
+        {
+            // Another caller may have built the instance before this one was admitted
+            Object compInst = _componentInstance;
+
+            if (compInst == null)
+                _componentInstance = compInst = super.getComponentInstance(component);
+
+            return compInst;
+        }
+        finally
+        {
+            _flight.release();
+        }
     }
 
     public Object getComponentInstance(RealizableComponent component)
     {
-        if (_componentInstance == null)
-            cache(super.getComponentInstance(component));
+        Object compInst = _componentInstance;
 
+        while (compInst == null)
+        {
+            if (_flight.acquire(_context, component))
+                return build(component);
+
+            compInst = _componentInstance;
+        }
+
+        return compInst;
+    }
+
+    /**
+     * @return Returns the singleton instance if it has been realized already, otherwise null.
+     */
+    public Object getRealizedInstance()
+    {
         return _componentInstance;
     }
 
+    /**
+     * The instance is shared.
+     */
+    public boolean buildsNewInstances()
+    {
+        return false;
+    }
+
     public String toString()
     {
         return " [Singleton" + decoratedStrategyToString() + "] ";
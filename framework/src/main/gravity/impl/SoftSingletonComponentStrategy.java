@@ -0,0 +1,39 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+
+/**
+ * This singleton strategy holds the instance through a soft reference, which the garbage collector
+ * clears only when the heap runs low. This suits large caches and indexes that are expensive to
+ * rebuild.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class SoftSingletonComponentStrategy extends ReclaimableSingletonComponentStrategy
+{
+    protected Reference newReference(Object compInst)
+    {
+        return new SoftReference(compInst);
+    }
+
+    public String toString()
+    {
+        return " [Soft Singleton" + decoratedStrategyToString() + "] ";
+    }
+}
@@ -0,0 +1,130 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentStrategy;
+import gravity.Context;
+import gravity.RealizableComponent;
+import gravity.UsageException;
+import gravity.util.Message;
+
+/**
+ * This is a lazy loading strategy for components that are expensive and not thread safe. It keeps
+ * a fixed number of concrete instances, the stripes, and serves a single dispatcher that routes
+ * every call to a stripe, which is locked for the duration of the call. A thread is routed to the
+ * stripe picked by its identity; when that stripe is busy, the call falls back to the first free
+ * stripe after it, and waits for its own stripe only when all stripes are busy. The stripes are
+ * created on their first use.
+ * <p>
+ * This costs far fewer instances than {@link ThreadLocalComponentStrategy} with large thread
+ * pools, and no loans, as with {@link PoolingComponentStrategy}, that callers must return. The
+ * number of stripes is configured via {@link #STRIPE_COUNT_KEY}, and defaults to the number of
+ * processors. The component must be keyed by an interface.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class StripedComponentStrategy extends LazyLoadingComponentStrategy
+{
+    /**
+     * The number of stripes, an {@link Integer}; zero or less for the number of processors.
+     */
+    public static final String STRIPE_COUNT_KEY = "gravity.striped.stripeCount";
+
+    private int             _stripeCount;
+
+    private volatile Object _dispatcher;
+
+    public void initialize(Context context, ComponentStrategy strategy)
+    {
+        super.initialize(context, strategy);
+
+        int count = ((Integer) context.getContextItem(STRIPE_COUNT_KEY)).intValue();
+
+        _stripeCount = StripedDispatcher.stripeCount(count);
+    }
+
+    private Object newInstance(RealizableComponent component)
+    {
+        return super.getComponentInstance(component);
+    }
+
+    private synchronized Object getDispatcher(final RealizableComponent component)
+    {
+        if (_dispatcher == null)
+        {
+            Class compIntf = component.getInterface();
+
+            if (!compIntf.isInterface())
+                throw _context.getExceptionWrapper().wrap(new UsageException(),
+                    Message.STRIPED_COMPONENT_NOT_INTERFACE, component);
+
+            StripedDispatcher stripes = new StripedDispatcher(_stripeCount, "[Striped: "
+                + component + "]")
+            {
+                protected Object newInstance()
+                {
+                    return StripedComponentStrategy.this.newInstance(component);
+                }
+            };
+
+            _dispatcher = stripes.newProxy(compIntf,
+                _context.getClassUtils().getClassLoader(compIntf));
+        }
+
+        return _dispatcher;
+    }
+
+    /**
+     * @return Returns the dispatcher that routes the calls to the stripes.
+     */
+    public Object getComponentInstance(RealizableComponent component)
+    {
+        Object dispatcher = _dispatcher;
+
+        if (dispatcher == null)
+            dispatcher = getDispatcher(component);
+
+        return dispatcher;
+    }
+
+    /**
+     * The stripes are never returned, this does nothing.
+     */
+    public void collectComponentInstance(Object compInst)
+    {
+    }
+
+    /**
+     * @return Returns the number of stripes.
+     */
+    public int getStripeCount()
+    {
+        return _stripeCount;
+    }
+
+    /**
+     * The instances are shared by the stripes.
+     */
+    public boolean buildsNewInstances()
+    {
+        return false;
+    }
+
+    public String toString()
+    {
+        return " [Striped" + decoratedStrategyToString() + "] ";
+    }
+}
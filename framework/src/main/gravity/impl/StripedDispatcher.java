@@ -0,0 +1,152 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This routes the calls on a dispatcher proxy to a fixed number of concrete instances, the stripes,
+ * each of which is locked for the duration of the call. A thread is routed to the stripe picked by
+ * its identity; when that stripe is busy, the call falls back to the first free stripe after it,
+ * and waits for its own stripe only when all stripes are busy. The stripes are created on their
+ * first use, via {@link #newInstance()}.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+abstract class StripedDispatcher implements InvocationHandler
+{
+    private static final class Stripe
+    {
+        private final ReentrantLock _lock = new ReentrantLock();
+
+        /**
+         * This is only accessed under the lock.
+         */
+        private Object              _instance;
+    }
+
+    private final Stripe[] _stripes;
+    private final String   _description;
+
+    /**
+     * @param count
+     *            The number of stripes; zero or less for the number of processors.
+     */
+    StripedDispatcher(int count, String description)
+    {
+        count = stripeCount(count);
+
+        _stripes = new Stripe[count];
+
+        for (int i = 0; i < count; i++)
+            _stripes[i] = new Stripe();
+
+        _description = description;
+    }
+
+    /**
+     * @return Returns the provided number of stripes, or the number of processors when the provided
+     *         number is zero or less.
+     */
+    static int stripeCount(int count)
+    {
+        return count > 0 ? count : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return Returns a new concrete instance for a stripe.
+     */
+    protected abstract Object newInstance();
+
+    /**
+     * @return Returns a new dispatcher proxy, generated in the provided class loader, that
+     *         implements the provided interface.
+     */
+    Object newProxy(Class compIntf, ClassLoader classLoader)
+    {
+        return Proxy.newProxyInstance(classLoader, new Class[]{compIntf}, this);
+    }
+
+    private Stripe lockStripe()
+    {
+        int count = _stripes.length;
+
+        int hash = System.identityHashCode(Thread.currentThread());
+
+        // Mix in the high bits, the stripe counts are small
+        hash ^= (hash >>> 16);
+
+        int home = (hash & 0x7fffffff) % count;
+
+        for (int i = 0; i < count; i++)
+        {
+            Stripe stripe = _stripes[(home + i) % count];
+
+            if (stripe._lock.tryLock())
+                return stripe;
+        }
+
+        Stripe stripe = _stripes[home];
+
+        stripe._lock.lock();
+
+        return stripe;
+    }
+
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+    {
+        if (method.getDeclaringClass() == Object.class)
+            return invokeObjectMethod(proxy, method, args);
+
+        Stripe stripe = lockStripe();
+
+        try
+        {
+            if (stripe._instance == null)
+                stripe._instance = newInstance();
+
+            return method.invoke(stripe._instance, args);
+        }
+        catch (InvocationTargetException e)
+        {
+            throw e.getTargetException();
+        }
+        finally
+        {
+            stripe._lock.unlock();
+        }
+    }
+
+    /**
+     * The dispatcher has its own identity, it stands for all the stripes.
+     */
+    private Object invokeObjectMethod(Object proxy, Method method, Object[] args)
+    {
+        String name = method.getName();
+
+        if ("equals".equals(name))
+            return Boolean.valueOf(proxy == args[0]);
+
+        if ("hashCode".equals(name))
+            return new Integer(System.identityHashCode(proxy));
+
+        return _description;
+    }
+}
@@ -0,0 +1,172 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentStrategy;
+import gravity.Context;
+import gravity.RealizableComponent;
+
+import java.lang.reflect.Method;
+
+/**
+ * This is a {@link ThreadLocalComponentStrategy} that is safe to use with virtual threads. Platform
+ * threads keep their own instance, as with the thread local strategy. Virtual threads are cheap and
+ * short lived, one instance each would defeat the purpose of caching the instances at all; they
+ * share a bounded cache of instances instead, served by a single dispatcher that routes every call
+ * to an instance that is locked for the duration of the call, as with
+ * {@link StripedComponentStrategy}. The carrier threads are not used to bind the instances, a
+ * virtual thread may move to another carrier in the middle of a call.
+ * <p>
+ * The size of the cache is configured via {@link #CACHE_SIZE_KEY}, and defaults to the number of
+ * processors. Virtual threads are detected reflectively, on every request and without keeping any
+ * state per thread, so that this strategy runs on older virtual machines, where all threads are
+ * platform threads. The component must be keyed by an interface for virtual threads to share the
+ * cache; otherwise, they too keep their own instance.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ThreadAffinityComponentStrategy extends ThreadLocalComponentStrategy
+{
+    /**
+     * The number of instances shared by the virtual threads, an {@link Integer}; zero or less for
+     * the number of processors.
+     */
+    public static final String    CACHE_SIZE_KEY = "gravity.threadAffinity.cacheSize";
+
+    /**
+     * Thread.isVirtual(), null when the virtual machine has no virtual threads.
+     */
+    private static final Method   IS_VIRTUAL     = getIsVirtualMethod();
+
+    private static final Object[] NO_ARGS        = new Object[0];
+
+    private static Method getIsVirtualMethod()
+    {
+        try
+        {
+            return Thread.class.getMethod("isVirtual", new Class[0]);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+
+    private int             _cacheSize;
+
+    private volatile Object _dispatcher;
+
+    public void initialize(Context context, ComponentStrategy strategy)
+    {
+        super.initialize(context, strategy);
+
+        int size = ((Integer) context.getContextItem(CACHE_SIZE_KEY)).intValue();
+
+        _cacheSize = StripedDispatcher.stripeCount(size);
+    }
+
+    /**
+     * @return Returns true if the provided thread is a virtual thread.
+     */
+    protected boolean isVirtual(Thread thread)
+    {
+        if (IS_VIRTUAL == null)
+            return false;
+
+        try
+        {
+            return ((Boolean) IS_VIRTUAL.invoke(thread, NO_ARGS)).booleanValue();
+        }
+        catch (Exception e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @return Returns a new concrete instance for the cache, bypassing the thread local variable.
+     */
+    private Object newInstance(RealizableComponent component)
+    {
+        if (_decoratedStrategy == null)
+            return component.newInstance();
+
+        return _decoratedStrategy.getComponentInstance(component);
+    }
+
+    private synchronized Object getDispatcher(final RealizableComponent component)
+    {
+        if (_dispatcher == null)
+        {
+            StripedDispatcher cache = new StripedDispatcher(_cacheSize, "[Thread Affinity: "
+                + component + "]")
+            {
+                protected Object newInstance()
+                {
+                    return ThreadAffinityComponentStrategy.this.newInstance(component);
+                }
+            };
+
+            Class compIntf = component.getInterface();
+
+            _dispatcher = cache.newProxy(compIntf,
+                _context.getClassUtils().getClassLoader(compIntf));
+        }
+
+        return _dispatcher;
+    }
+
+    /**
+     * @return Returns the instance of the current thread for platform threads, and the dispatcher
+     *         that routes the calls to the shared cache for virtual threads.
+     */
+    public Object getComponentInstance(RealizableComponent component)
+    {
+        if (!isVirtual(Thread.currentThread()) || !component.getInterface().isInterface())
+            return super.getComponentInstance(component);
+
+        Object dispatcher = _dispatcher;
+
+        if (dispatcher == null)
+            dispatcher = getDispatcher(component);
+
+        return dispatcher;
+    }
+
+    /**
+     * The cached instances are never returned, the dispatcher is not collected.
+     */
+    public void collectComponentInstance(Object compInst)
+    {
+        if (compInst != null && compInst == _dispatcher)
+            return;
+
+        super.collectComponentInstance(compInst);
+    }
+
+    /**
+     * @return Returns the number of instances shared by the virtual threads.
+     */
+    public int getCacheSize()
+    {
+        return _cacheSize;
+    }
+
+    public String toString()
+    {
+        return " [Thread Affinity" + decoratedStrategyToString() + "] ";
+    }
+}
@@ -21,15 +21,120 @@ import gravity.util.CleanableThreadLocal;
 import gravity.util.DefaultCleanableThreadLocal;
 import gravity.util.ThreadPreTerminationObserver;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
+ * This strategy keeps one instance per thread. The instance of a thread is collected when the
+ * thread's pre-termination observers are notified, see
+ * {@link gravity.Container#handlePreThreadTermination()}.
+ * <p>
+ * Threads that die without notifying their observers would take their instances with them. When
+ * the {@link #RECLAIM_INTERVAL_KEY} context item is set, the instances are also tracked along with
+ * weak references to their threads, and a background sweeper collects the instances of the dead
+ * threads, returning them to the decorated strategy, a pool for example.
+ * 
  * @author Harish Krishnaswamy
  * @version $Id: ThreadLocalComponentStrategy.java,v 1.4 2005-10-06 21:59:26 harishkswamy Exp $
  */
 public class ThreadLocalComponentStrategy extends DispatchingComponentStrategy implements
     ThreadPreTerminationObserver
 {
+    /**
+     * The time, in milliseconds, between two sweeps for the instances of dead threads, a
+     * {@link Long}; zero or less to not track the instances.
+     */
+    public static final String RECLAIM_INTERVAL_KEY = "gravity.threadLocal.reclaimInterval";
+
+    private static Timer       _reclamationTimer;
+
+    /**
+     * This is a thread-bound instance, tracked with a weak reference to its thread.
+     */
+    private static final class Binding extends WeakReference
+    {
+        private final Object _instance;
+
+        private Binding(Thread thread, Object instance, ReferenceQueue queue)
+        {
+            super(thread, queue);
+
+            _instance = instance;
+        }
+
+        private boolean isThreadDead()
+        {
+            Thread thread = (Thread) get();
+
+            return thread == null || !thread.isAlive();
+        }
+    }
+
+    /**
+     * This runs the sweeps of a strategy. It holds the strategy weakly, so a strategy that is no
+     * longer in use is not kept from being garbage-collected; the task ends with the strategy.
+     */
+    private static class ReclamationTask extends TimerTask
+    {
+        private WeakReference _strategyRef;
+
+        private ReclamationTask(ThreadLocalComponentStrategy strategy)
+        {
+            _strategyRef = new WeakReference(strategy);
+        }
+
+        public void run()
+        {
+            ThreadLocalComponentStrategy strategy = (ThreadLocalComponentStrategy) _strategyRef
+                .get();
+
+            if (strategy == null)
+            {
+                cancel();
+
+                return;
+            }
+
+            try
+            {
+                strategy.reclaim();
+            }
+            catch (RuntimeException e)
+            {
+                // This must not kill the timer, it runs the sweeps of all strategies; the next run
+                // will try again.
+                strategy.reclamationFailed(e);
+            }
+        }
+    }
+
+    private static synchronized Timer getReclamationTimer()
+    {
+        if (_reclamationTimer == null)
+            _reclamationTimer = new Timer(true);
+
+        return _reclamationTimer;
+    }
+
     private CleanableThreadLocal _threadLocal;
 
+    /**
+     * The bindings of the live instances, null when the instances are not tracked. The binding of
+     * the current thread is kept in a plain thread local variable that dies with the thread.
+     */
+    private Map                  _bindings;
+    private ThreadLocal          _binding;
+    private ReferenceQueue       _deadThreads;
+    private final AtomicLong     _reclaimedCount          = new AtomicLong();
+    private final AtomicLong     _reclamationFailureCount = new AtomicLong();
+    private volatile Throwable   _lastReclamationFailure;
+
     public void initialize(Context context, ComponentStrategy strategy)
     {
         super.initialize(context, strategy);
@@ -37,20 +142,53 @@ public class ThreadLocalComponentStrategy extends DispatchingComponentStrategy i
         _threadLocal = (CleanableThreadLocal) context.newApiInstance(CleanableThreadLocal.class);
         // This will register for ThreadEvents and notify us when appropriate.
         _threadLocal.initialize(context, this);
+
+        long interval = ((Long) context.getContextItem(RECLAIM_INTERVAL_KEY)).longValue();
+
+        if (interval > 0)
+        {
+            _bindings = new ConcurrentHashMap();
+            _binding = new ThreadLocal();
+            _deadThreads = new ReferenceQueue();
+
+            getReclamationTimer().schedule(new ReclamationTask(this), interval, interval);
+        }
     }
 
-    private synchronized void cacheComponent(Object compInst)
+    /**
+     * The thread local variable is only ever accessed by its own thread, this needs no locking.
+     */
+    public Object getComponentInstance(RealizableComponent component)
     {
-        if (_threadLocal.get() == null)
+        Object compInst = _threadLocal.get();
+
+        if (compInst == null)
+        {
+            compInst = super.getComponentInstance(component);
+
             _threadLocal.set(compInst);
+
+            if (_bindings != null)
+                bind(compInst);
+        }
+
+        return compInst;
     }
 
-    public Object getComponentInstance(RealizableComponent component)
+    private void bind(Object compInst)
     {
-        if (_threadLocal.get() == null)
-            cacheComponent(super.getComponentInstance(component));
+        Binding binding = new Binding(Thread.currentThread(), compInst, _deadThreads);
+
+        _bindings.put(binding, Boolean.TRUE);
+        _binding.set(binding);
+    }
 
-        return _threadLocal.get();
+    /**
+     * @return Returns true if the provided binding was live, it is not any more.
+     */
+    private boolean unbind(Binding binding)
+    {
+        return binding != null && _bindings.remove(binding) != null;
     }
 
     /**
@@ -59,7 +197,96 @@ public class ThreadLocalComponentStrategy extends DispatchingComponentStrategy i
      */
     public void handleThreadPreTermination()
     {
-        collectComponentInstance(_threadLocal.get());
+        Object compInst = _threadLocal.get();
+
+        if (_bindings != null)
+        {
+            Binding binding = (Binding) _binding.get();
+
+            _binding.set(null);
+
+            // The sweeper got here first
+            if (!unbind(binding))
+                return;
+        }
+
+        collectComponentInstance(compInst);
+    }
+
+    /**
+     * Collects the instances of the threads that died since the last sweep; those of the threads
+     * that were garbage-collected first, then those of the threads that are no longer alive.
+     */
+    protected void reclaim()
+    {
+        for (Binding binding; (binding = (Binding) _deadThreads.poll()) != null;)
+            reclaim(binding);
+
+        for (Iterator itr = _bindings.keySet().iterator(); itr.hasNext();)
+        {
+            Binding binding = (Binding) itr.next();
+
+            if (binding.isThreadDead())
+                reclaim(binding);
+        }
+    }
+
+    private void reclamationFailed(RuntimeException e)
+    {
+        _lastReclamationFailure = e;
+
+        _reclamationFailureCount.incrementAndGet();
+    }
+
+    private void reclaim(Binding binding)
+    {
+        if (!unbind(binding))
+            return;
+
+        _reclaimedCount.incrementAndGet();
+
+        collectComponentInstance(binding._instance);
+    }
+
+    /**
+     * @return Returns the number of instances bound to live threads; always zero when the instances
+     *         are not tracked.
+     */
+    public int getThreadBoundCount()
+    {
+        return _bindings == null ? 0 : _bindings.size();
+    }
+
+    /**
+     * @return Returns the number of instances reclaimed from dead threads.
+     */
+    public long getReclaimedCount()
+    {
+        return _reclaimedCount.get();
+    }
+
+    /**
+     * @return Returns the number of sweeps that failed.
+     */
+    public long getReclamationFailureCount()
+    {
+        return _reclamationFailureCount.get();
+    }
+
+    /**
+     * @return Returns the failure of the last failed sweep, null if there was none.
+     */
+    public Throwable getLastReclamationFailure()
+    {
+        return _lastReclamationFailure;
+    }
+
+    /**
+     * The instance is shared by the calls on its thread.
+     */
+    public boolean buildsNewInstances()
+    {
+        return false;
     }
 
     public String toString()
@@ -0,0 +1,39 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+
+/**
+ * This singleton strategy holds the instance through a weak reference, which the garbage collector
+ * clears as soon as no caller holds the instance. This suits components that are cheap enough to
+ * rebuild after every collection.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class WeakSingletonComponentStrategy extends ReclaimableSingletonComponentStrategy
+{
+    protected Reference newReference(Object compInst)
+    {
+        return new WeakReference(compInst);
+    }
+
+    public String toString()
+    {
+        return " [Weak Singleton" + decoratedStrategyToString() + "] ";
+    }
+}
@@ -0,0 +1,55 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.plugins;
+
+import gravity.ComponentStrategy;
+import gravity.Context;
+
+/**
+ * This is the cloning strategy type with the name of the method that copies the template of a
+ * particular component.
+ * <p>
+ * As with all strategy types, this type is equal to {@link DefaultComponentStrategyType#CLONING};
+ * the method name is applied only when the component is not already cloning.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class CloningComponentStrategyType extends DefaultComponentStrategyType
+{
+    private String _copyMethodName;
+
+    public CloningComponentStrategyType(String copyMethodName)
+    {
+        super("gravity.impl.CloningComponentStrategy");
+
+        _copyMethodName = copyMethodName;
+    }
+
+    public ComponentStrategy newInstance(Context context, ComponentStrategy decoratedStrategy)
+    {
+        ComponentStrategy strategy = super.newInstance(context, decoratedStrategy);
+
+        context.getReflectUtils().invokeMethod(strategy, "configure",
+            new Object[]{_copyMethodName});
+
+        return strategy;
+    }
+
+    public String getCopyMethodName()
+    {
+        return _copyMethodName;
+    }
+}
@@ -40,6 +40,22 @@ public class DefaultComponentStrategyType implements ComponentStrategyType
                                                                       "gravity.impl.PoolingComponentStrategy");
     public static final DefaultComponentStrategyType THREAD_LOCAL = new DefaultComponentStrategyType(
                                                                       "gravity.impl.ThreadLocalComponentStrategy");
+    public static final DefaultComponentStrategyType STRIPED      = new DefaultComponentStrategyType(
+                                                                      "gravity.impl.StripedComponentStrategy");
+    public static final DefaultComponentStrategyType THREAD_AFFINITY = new DefaultComponentStrategyType(
+                                                                      "gravity.impl.ThreadAffinityComponentStrategy");
+    public static final DefaultComponentStrategyType SCOPED       = new DefaultComponentStrategyType(
+                                                                      "gravity.impl.ScopedComponentStrategy");
+    public static final DefaultComponentStrategyType SOFT_SINGLETON = new DefaultComponentStrategyType(
+                                                                      "gravity.impl.SoftSingletonComponentStrategy");
+    public static final DefaultComponentStrategyType WEAK_SINGLETON = new DefaultComponentStrategyType(
+                                                                      "gravity.impl.WeakSingletonComponentStrategy");
+    public static final DefaultComponentStrategyType REFRESHING   = new DefaultComponentStrategyType(
+                                                                      "gravity.impl.RefreshingComponentStrategy");
+    public static final DefaultComponentStrategyType PREFETCHING  = new DefaultComponentStrategyType(
+                                                                      "gravity.impl.PrefetchingComponentStrategy");
+    public static final DefaultComponentStrategyType CLONING      = new DefaultComponentStrategyType(
+                                                                      "gravity.impl.CloningComponentStrategy");
 
     private String                                   _className;
     private volatile int                             _hashCode;
@@ -18,6 +18,7 @@ import gravity.ComponentCallback;
 import gravity.ComponentKey;
 import gravity.Location;
 import gravity.MutableContainer;
+import gravity.util.PoolConfiguration;
 
 import java.util.List;
 import java.util.Map;
@@ -555,11 +556,79 @@ public class MutableContainerAdapter
         return _container.wrapComponentStrategy(compKey, DefaultComponentStrategyType.POOLING);
     }
 
+    public ComponentKey pooling(ComponentKey compKey, int size)
+    {
+        PoolConfiguration config = new PoolConfiguration();
+        config.setMaxSize(size);
+
+        return pooling(compKey, config);
+    }
+
+    public ComponentKey pooling(ComponentKey compKey, PoolConfiguration config)
+    {
+        return _container.wrapComponentStrategy(compKey, new PoolingComponentStrategyType(config));
+    }
+
     public ComponentKey threadLocal(ComponentKey compKey)
     {
         return _container.wrapComponentStrategy(compKey, DefaultComponentStrategyType.THREAD_LOCAL);
     }
 
+    public ComponentKey striped(ComponentKey compKey)
+    {
+        return _container.wrapComponentStrategy(compKey, DefaultComponentStrategyType.STRIPED);
+    }
+
+    public ComponentKey threadAffinity(ComponentKey compKey)
+    {
+        return _container.wrapComponentStrategy(compKey,
+            DefaultComponentStrategyType.THREAD_AFFINITY);
+    }
+
+    public ComponentKey scoped(ComponentKey compKey)
+    {
+        return _container.wrapComponentStrategy(compKey, DefaultComponentStrategyType.SCOPED);
+    }
+
+    public ComponentKey softSingleton(ComponentKey compKey)
+    {
+        return _container.wrapComponentStrategy(compKey,
+            DefaultComponentStrategyType.SOFT_SINGLETON);
+    }
+
+    public ComponentKey weakSingleton(ComponentKey compKey)
+    {
+        return _container.wrapComponentStrategy(compKey,
+            DefaultComponentStrategyType.WEAK_SINGLETON);
+    }
+
+    public ComponentKey prefetching(ComponentKey compKey)
+    {
+        return _container.wrapComponentStrategy(compKey, DefaultComponentStrategyType.PREFETCHING);
+    }
+
+    public ComponentKey cloning(ComponentKey compKey)
+    {
+        return _container.wrapComponentStrategy(compKey, DefaultComponentStrategyType.CLONING);
+    }
+
+    public ComponentKey cloning(ComponentKey compKey, String copyMethodName)
+    {
+        return _container.wrapComponentStrategy(compKey, new CloningComponentStrategyType(
+            copyMethodName));
+    }
+
+    public ComponentKey refreshing(ComponentKey compKey)
+    {
+        return _container.wrapComponentStrategy(compKey, DefaultComponentStrategyType.REFRESHING);
+    }
+
+    public ComponentKey refreshing(ComponentKey compKey, long timeToLive, long refreshAhead)
+    {
+        return _container.wrapComponentStrategy(compKey, new RefreshingComponentStrategyType(
+            timeToLive, refreshAhead));
+    }
+
     // Config point definition helper methods =================================
 
     public List configList(Object configKey)
@@ -0,0 +1,57 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.plugins;
+
+import gravity.ComponentStrategy;
+import gravity.Context;
+import gravity.util.PoolConfiguration;
+
+/**
+ * This is the pooling strategy type with a pool configuration for a particular component. The
+ * strategies it creates are configured with the provided configuration, the settings that are not
+ * set in the configuration are inherited from the context.
+ * <p>
+ * As with all strategy types, this type is equal to {@link DefaultComponentStrategyType#POOLING};
+ * the configuration is applied only when the component is not already pooled.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class PoolingComponentStrategyType extends DefaultComponentStrategyType
+{
+    private PoolConfiguration _configuration;
+
+    public PoolingComponentStrategyType(PoolConfiguration config)
+    {
+        super("gravity.impl.PoolingComponentStrategy");
+
+        _configuration = config;
+    }
+
+    public ComponentStrategy newInstance(Context context, ComponentStrategy decoratedStrategy)
+    {
+        ComponentStrategy strategy = super.newInstance(context, decoratedStrategy);
+
+        context.getReflectUtils().invokeMethod(strategy, "configure",
+            new Object[]{_configuration});
+
+        return strategy;
+    }
+
+    public PoolConfiguration getConfiguration()
+    {
+        return _configuration;
+    }
+}
@@ -0,0 +1,63 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.plugins;
+
+import gravity.ComponentStrategy;
+import gravity.Context;
+
+/**
+ * This is the refreshing strategy type with the time to live and the refresh-ahead period of a
+ * particular component, both in milliseconds.
+ * <p>
+ * As with all strategy types, this type is equal to
+ * {@link DefaultComponentStrategyType#REFRESHING}; the times are applied only when the component is
+ * not already refreshing.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class RefreshingComponentStrategyType extends DefaultComponentStrategyType
+{
+    private long _timeToLive;
+    private long _refreshAhead;
+
+    public RefreshingComponentStrategyType(long timeToLive, long refreshAhead)
+    {
+        super("gravity.impl.RefreshingComponentStrategy");
+
+        _timeToLive = timeToLive;
+        _refreshAhead = refreshAhead;
+    }
+
+    public ComponentStrategy newInstance(Context context, ComponentStrategy decoratedStrategy)
+    {
+        ComponentStrategy strategy = super.newInstance(context, decoratedStrategy);
+
+        context.getReflectUtils().invokeMethod(strategy, "configure",
+            new Object[]{new Long(_timeToLive), new Long(_refreshAhead)});
+
+        return strategy;
+    }
+
+    public long getTimeToLive()
+    {
+        return _timeToLive;
+    }
+
+    public long getRefreshAhead()
+    {
+        return _refreshAhead;
+    }
+}
@@ -18,6 +18,7 @@ import gravity.ComponentCallback;
 import gravity.ComponentPhase;
 import gravity.Context;
 import gravity.plugins.MutableContainerAdapter;
+import gravity.util.PoolConfiguration;
 
 import java.util.Arrays;
 import java.util.List;
@@ -67,6 +68,11 @@ public class BshPluginHelper
         return newComponentCallback(args, ComponentPhase.SHUTDOWN);
     }
 
+    public ComponentCallback newPostCloneCallback(Object[] args)
+    {
+        return newComponentCallback(args, ComponentPhase.POST_CLONE);
+    }
+
     public ComponentCallback[] toComponentCallbackArray(Object[] callbacks)
     {
         List methodList = Arrays.asList(callbacks);
@@ -115,6 +121,58 @@ public class BshPluginHelper
         return configKey;
     }
 
+    /**
+     * @return Returns a new pool configuration with the settings provided as name value pairs.
+     */
+    public PoolConfiguration newPoolConfiguration(Object[] args)
+    {
+        PoolConfiguration config = new PoolConfiguration();
+
+        for (int i = 0; args != null && i < args.length; i += 2)
+        {
+            String name = (String) args[i];
+            Object value = args[i + 1];
+
+            if ("maxSize".equals(name))
+                config.setMaxSize(((Number) value).intValue());
+
+            else if ("minSize".equals(name))
+                config.setMinSize(((Number) value).intValue());
+
+            else if ("adaptive".equals(name))
+                config.setAdaptive(((Boolean) value).booleanValue());
+
+            else if ("maxActive".equals(name))
+                config.setMaxActive(((Number) value).intValue());
+
+            else if ("maxWait".equals(name))
+                config.setMaxWait(((Number) value).longValue());
+
+            else if ("minIdle".equals(name))
+                config.setMinIdle(((Number) value).intValue());
+
+            else if ("prefillSize".equals(name))
+                config.setPrefillSize(((Number) value).intValue());
+
+            else if ("idleTimeout".equals(name))
+                config.setIdleTimeout(((Number) value).longValue());
+
+            else if ("maintenanceInterval".equals(name))
+                config.setMaintenanceInterval(((Number) value).longValue());
+
+            else if ("validationMethod".equals(name))
+                config.setValidationMethod((String) value);
+
+            else if ("leakSampleRate".equals(name))
+                config.setLeakSampleRate(((Number) value).intValue());
+
+            else
+                throw new IllegalArgumentException("Unknown pool setting: " + name);
+        }
+
+        return config;
+    }
+
     private Object newObject(Class type, Object arg)
     {
         Object[] keyArgs;
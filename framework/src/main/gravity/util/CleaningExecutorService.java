@@ -0,0 +1,138 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.util;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is an {@link java.util.concurrent.ExecutorService}decorator that notifies the
+ * pre-termination observers of the {@link ThreadEvent}on the worker thread after every given
+ * number of tasks, so the instances held by {@link CleanableThreadLocal}s do not pile up in
+ * worker threads that never terminate. With a cleanup interval of one, every task starts with no
+ * thread local instances; larger intervals trade the isolation of the tasks for fewer instances.
+ * <p>
+ * The tasks are counted per worker thread. The observers are notified even when the task fails.
+ * 
+ * @see CleaningThreadFactory
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class CleaningExecutorService extends AbstractExecutorService
+{
+    private final ThreadEvent     _threadEvent;
+    private final ExecutorService _executor;
+    private final int             _cleanupInterval;
+
+    /**
+     * The number of tasks run by each worker thread since its last cleanup.
+     */
+    private final ThreadLocal     _taskCount = new ThreadLocal()
+                                             {
+                                                 protected Object initialValue()
+                                                 {
+                                                     return new int[1];
+                                                 }
+                                             };
+
+    /**
+     * Cleans up after every task.
+     */
+    public CleaningExecutorService(ThreadEvent threadEvent, ExecutorService executor)
+    {
+        this(threadEvent, executor, 1);
+    }
+
+    /**
+     * @param cleanupInterval
+     *            The number of tasks a worker thread runs between cleanups; zero or less to never
+     *            clean up between tasks.
+     */
+    public CleaningExecutorService(ThreadEvent threadEvent, ExecutorService executor,
+        int cleanupInterval)
+    {
+        _threadEvent = threadEvent;
+        _executor = executor;
+        _cleanupInterval = cleanupInterval;
+    }
+
+    private void afterTask()
+    {
+        if (_cleanupInterval <= 0)
+            return;
+
+        int[] count = (int[]) _taskCount.get();
+
+        if (++count[0] >= _cleanupInterval)
+        {
+            count[0] = 0;
+
+            _threadEvent.notifyPreTerminationObservers();
+        }
+    }
+
+    public void execute(final Runnable command)
+    {
+        _executor.execute(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    command.run();
+                }
+                finally
+                {
+                    afterTask();
+                }
+            }
+        });
+    }
+
+    public void shutdown()
+    {
+        _executor.shutdown();
+    }
+
+    public List shutdownNow()
+    {
+        return _executor.shutdownNow();
+    }
+
+    public boolean isShutdown()
+    {
+        return _executor.isShutdown();
+    }
+
+    public boolean isTerminated()
+    {
+        return _executor.isTerminated();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return _executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * @return Returns the decorated executor.
+     */
+    public ExecutorService getExecutor()
+    {
+        return _executor;
+    }
+}
@@ -0,0 +1,72 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This is a {@link java.util.concurrent.ThreadFactory}decorator that notifies the pre-termination
+ * observers of the {@link ThreadEvent}when a thread it creates is about to terminate, so the
+ * instances held by {@link CleanableThreadLocal}s are reclaimed without the application calling
+ * {@link gravity.Container#handlePreThreadTermination()}. Use it for the worker threads of thread
+ * pools:
+ * 
+ * <pre>
+ * ThreadEvent event = (ThreadEvent) container.getConfiguration(ThreadEvent.class);
+ * 
+ * ExecutorService executor = Executors.newFixedThreadPool(8, new CleaningThreadFactory(event));
+ * </pre>
+ * 
+ * Pooled worker threads may live as long as the application, see {@link CleaningExecutorService}
+ * to reclaim the instances between tasks.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class CleaningThreadFactory implements ThreadFactory
+{
+    private final ThreadEvent   _threadEvent;
+    private final ThreadFactory _threadFactory;
+
+    public CleaningThreadFactory(ThreadEvent threadEvent)
+    {
+        this(threadEvent, Executors.defaultThreadFactory());
+    }
+
+    public CleaningThreadFactory(ThreadEvent threadEvent, ThreadFactory threadFactory)
+    {
+        _threadEvent = threadEvent;
+        _threadFactory = threadFactory;
+    }
+
+    public Thread newThread(final Runnable runnable)
+    {
+        return _threadFactory.newThread(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    runnable.run();
+                }
+                finally
+                {
+                    _threadEvent.notifyPreTerminationObservers();
+                }
+            }
+        });
+    }
+}
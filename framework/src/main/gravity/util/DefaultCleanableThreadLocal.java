@@ -97,6 +97,7 @@ public class DefaultCleanableThreadLocal implements CleanableThreadLocal,
         if (_observer != null)
             _observer.handleThreadPreTermination();
 
-        _threadLocal.set(null);
+        // The observers are dropped after the notification, the next access registers again
+        _threadLocal.set(INITIALIZED);
     }
 }
\ No newline at end of file
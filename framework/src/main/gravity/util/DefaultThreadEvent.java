@@ -26,20 +26,29 @@ import java.util.Map;
  */
 public class DefaultThreadEvent implements ThreadEvent
 {
-    private ThreadLocal _threadLocal = new ThreadLocal();
-
-    private void initialize()
+    /**
+     * Every thread gets its own observers, whichever thread created this event.
+     */
+    private ThreadLocal _threadLocal = new ThreadLocal()
+                                     {
+                                         protected Object initialValue()
+                                         {
+                                             return newObserverTypes();
+                                         }
+                                     };
+
+    private static Map newObserverTypes()
     {
         Map observerTypes = new HashMap();
 
         observerTypes.put(ThreadPreTerminationObserver.class, new ArrayList());
 
-        _threadLocal.set(observerTypes);
+        return observerTypes;
     }
 
-    public DefaultThreadEvent()
+    private void initialize()
     {
-        initialize();
+        _threadLocal.set(newObserverTypes());
     }
 
     private List getObservers(Class observerType)
@@ -61,6 +61,13 @@ public class Message
     public static final String CANNOT_LOAD_PROPERTIES                  = "CANNOT_LOAD_PROPERTIES";
     public static final String CONFIGURATION_NOT_REGISTERED            = "CONFIGURATION_NOT_REGISTERED";
     public static final String INVALID_IMPLEMENTATION_TYPE             = "INVALID_IMPLEMENTATION_TYPE";
+    public static final String CANNOT_LOAN_POOLED_INSTANCE             = "CANNOT_LOAN_POOLED_INSTANCE";
+    public static final String STRIPED_COMPONENT_NOT_INTERFACE         = "STRIPED_COMPONENT_NOT_INTERFACE";
+    public static final String CANNOT_SHUTDOWN_COMPONENT_INSTANCE      = "CANNOT_SHUTDOWN_COMPONENT_INSTANCE";
+    public static final String SCOPE_NOT_OPEN                          = "SCOPE_NOT_OPEN";
+    public static final String CANNOT_CLONE_COMPONENT_INSTANCE         = "CANNOT_CLONE_COMPONENT_INSTANCE";
+    public static final String SINGLETON_DEPENDENCY_CYCLE              = "SINGLETON_DEPENDENCY_CYCLE";
+    public static final String CANNOT_AWAIT_SINGLETON_INSTANCE         = "CANNOT_AWAIT_SINGLETON_INSTANCE";
 
     private Context            _context;
     private Properties         _messages;
@@ -14,84 +14,964 @@
 
 package gravity.util;
 
-import java.lang.ref.SoftReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
+ * This is a lock free pool of objects. The idle objects are kept in a fixed number of slots that
+ * threads claim and fill by compare-and-set, each thread starting its search at a different slot
+ * to spread the contention. The idle objects are held strongly, so they remain ready for loan
+ * until they are evicted via {@link #evict(long, int)} after being idle for too long.
+ * <p>
+ * Objects are tracked by identity, never by <code>equals</code>, and only objects loaned by this
+ * pool are accepted back, once per loan. Every object is tracked by a member record that is created
+ * when the object first enters the pool and holds the object weakly, so objects that are never
+ * collected are not kept from being garbage-collected.
+ * <p>
+ * The pool can also limit the number of objects out on loan. A loan must then be reserved, via
+ * {@link #reserveLoan(long)}, before an object is loaned from the pool or created and registered
+ * via {@link #loaned(Object)}; the reservation waits while the limit is reached. A loan ends when
+ * its object is collected or garbage-collected, or when the reservation is cancelled via
+ * {@link #cancelLoan()}. The time spent waiting for reservations is recorded.
+ * <p>
+ * An object can also be loaned as a {@link Loan}, via {@link #borrow()} or
+ * {@link #register(Object)}, that holds the member record of the object so the object is returned
+ * without a lookup, and only once per loan, via {@link #collectLoan(Loan)}.
+ * <p>
+ * Loaning an idle object via {@link #loan()} and returning it via {@link #collect(Object)} does not
+ * allocate; the member record is looked up with a probe that is reused by each thread. A
+ * {@link Loan} is a new object for every loan, and an object entering the pool gets a new member
+ * record.
+ * <p>
+ * Loans that are never returned can be detected by sampling the stack traces of the loans, via
+ * {@link #setLeakSampleRate(int)}. A sampled loan whose object is garbage-collected before it is
+ * returned is reported as a leak, with the stack trace of the loan, via {@link #getLeaks()}.
+ * <p>
+ * The number of slots in use, the capacity of the pool, can be changed within the maximum size of
+ * the pool via {@link #resize(int)}, or adapted to the demand via {@link #adapt(int)}.
+ * 
  * @author Harish Krishnaswamy
  * @version $Id: Pool.java,v 1.3 2005-10-06 21:59:25 harishkswamy Exp $
  */
 public class Pool
 {
-    private static final int DEFAULT_MAX_SIZE = 10;
-    private int              _maxSize;
-    private List             _pooledObjects   = new ArrayList();
-    private List             _loanedObjects   = new ArrayList();
+    private static final int  DEFAULT_MAX_SIZE = 10;
+
+    /**
+     * Waiting reservations check for loans of garbage-collected objects this often.
+     */
+    private static final long LAPSE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * The number of leaks whose stack traces are kept.
+     */
+    private static final int  MAX_LEAK_TRACES   = 16;
+
+    /**
+     * This records where a loan, that was never returned, was made.
+     */
+    private static final class LoanTrace extends Throwable
+    {
+        private static final long serialVersionUID = -2580946520386187345L;
+
+        private LoanTrace()
+        {
+            super("The object loaned here was never returned to the pool");
+        }
+    }
+
+    /**
+     * This is a loan of an object that holds the member record of the object. The loan is
+     * returned, and the object collected, only once.
+     */
+    public static final class Loan
+    {
+        private static final AtomicIntegerFieldUpdater OPEN = AtomicIntegerFieldUpdater
+                                                                .newUpdater(Loan.class, "_open");
+
+        private final Member                           _member;
+        private final Object                           _item;
+
+        /**
+         * One while the loan is open; this is updated via {@link #OPEN}, so a loan is a single
+         * object.
+         */
+        private volatile int                           _open = 1;
+
+        private Loan(Member member, Object item)
+        {
+            _member = member;
+            _item = item;
+        }
+
+        /**
+         * @return Returns the loaned object.
+         */
+        public Object getItem()
+        {
+            return _item;
+        }
+
+        /**
+         * @return Returns true if the loan has not been returned yet.
+         */
+        public boolean isOpen()
+        {
+            return _open == 1;
+        }
+
+        /**
+         * @return Returns true if this call closed the loan, false if it was closed already.
+         */
+        private boolean close()
+        {
+            return OPEN.compareAndSet(this, 1, 0);
+        }
+    }
+
+    /**
+     * Looks up the member record of an object. A lookup is reused by its thread, it holds the
+     * object only for the duration of a lookup.
+     */
+    private static final class Lookup
+    {
+        private Object _item;
+
+        public int hashCode()
+        {
+            return System.identityHashCode(_item);
+        }
+
+        public boolean equals(Object obj)
+        {
+            return obj instanceof Member && ((Member) obj).get() == _item;
+        }
+    }
+
+    /**
+     * This is the record of an object that belongs to this pool. The record holds the object
+     * weakly, and strongly while it is idle.
+     */
+    private static final class Member extends WeakReference
+    {
+        private final int              _hash;
+        private final AtomicBoolean    _loaned;
+
+        /**
+         * This is null while the object is on loan, so objects that are never collected become
+         * weakly reachable.
+         */
+        private volatile Object        _idle;
+
+        private volatile long          _idleSince;
+
+        /**
+         * This is where the current loan was made, when the loan is sampled for leak detection.
+         */
+        private volatile LoanTrace     _loanTrace;
+
+        private Member(Object item, ReferenceQueue queue, boolean loaned)
+        {
+            super(item, queue);
+
+            _hash = System.identityHashCode(item);
+            _loaned = new AtomicBoolean(loaned);
+        }
+
+        /**
+         * @return Returns the idle object, or null if it is on loan.
+         */
+        private Object getIdle()
+        {
+            return _idle;
+        }
+
+        public int hashCode()
+        {
+            return _hash;
+        }
+
+        public boolean equals(Object obj)
+        {
+            if (obj == this)
+                return true;
+
+            if (obj instanceof Lookup)
+                return obj.equals(this);
+
+            Object item = get();
+
+            return item != null && obj instanceof Member && ((Member) obj).get() == item;
+        }
+    }
+
+    private static final ThreadLocal   LOOKUP         = new ThreadLocal()
+                                                      {
+                                                          protected Object initialValue()
+                                                          {
+                                                              return new Lookup();
+                                                          }
+                                                      };
+
+    private final int                  _maxSize;
+
+    /**
+     * The number of slots in use, the rest of the slots are left empty.
+     */
+    private volatile int               _capacity;
+
+    private final AtomicReferenceArray _slots;
+
+    private final ConcurrentMap        _members       = new ConcurrentHashMap();
+
+    private final ReferenceQueue       _lapsedMembers = new ReferenceQueue();
+
+    private final int                  _maxActive;
+
+    /**
+     * There is a permit per loan that can be reserved, null when the loans are not limited.
+     */
+    private final Semaphore            _loanPermits;
+
+    private final AtomicInteger        _activeCount   = new AtomicInteger();
+    private final AtomicInteger        _waitingCount  = new AtomicInteger();
+    private final AtomicLong           _waitCount     = new AtomicLong();
+    private final AtomicLong           _waitNanos     = new AtomicLong();
+    private final AtomicLong           _timeoutCount  = new AtomicLong();
+    private final AtomicLong           _evictionCount = new AtomicLong();
+    private final AtomicLong           _missCount     = new AtomicLong();
+
+    /**
+     * The number of loans, the number of loans that missed an idle object and the largest number
+     * of objects out on loan since the capacity was last adapted.
+     */
+    private final AtomicLong           _recentLoans   = new AtomicLong();
+    private final AtomicLong           _recentMisses  = new AtomicLong();
+    private final AtomicInteger        _peakActive    = new AtomicInteger();
+
+    private volatile int               _leakSampleRate;
+    private final AtomicLong           _loanSequence  = new AtomicLong();
+    private final AtomicLong           _leakCount     = new AtomicLong();
+    private final List                 _leaks         = new LinkedList();
 
     public Pool()
     {
-        _maxSize = DEFAULT_MAX_SIZE;
+        this(DEFAULT_MAX_SIZE);
     }
 
     public Pool(int maxSize)
+    {
+        this(maxSize, 0);
+    }
+
+    /**
+     * @param maxActive
+     *            The maximum number of objects out on loan; zero or less for no limit.
+     */
+    public Pool(int maxSize, int maxActive)
     {
         _maxSize = (maxSize <= 0) ? DEFAULT_MAX_SIZE : maxSize;
+
+        _slots = new AtomicReferenceArray(_maxSize);
+        _capacity = _maxSize;
+
+        _maxActive = maxActive <= 0 ? 0 : maxActive;
+
+        // Fair, so the reservations are granted in order under load
+        _loanPermits = _maxActive == 0 ? null : new Semaphore(_maxActive, true);
+    }
+
+    /**
+     * @return Returns the slot the current thread starts searching from.
+     */
+    private int startSlot(int capacity)
+    {
+        int hash = System.identityHashCode(Thread.currentThread());
+
+        // Mix in the high bits, the pools are small
+        hash ^= (hash >>> 16);
+
+        return (hash & 0x7fffffff) % capacity;
+    }
+
+    /**
+     * Removes the records of the objects that were garbage-collected and ends their loans.
+     */
+    private void expungeLapsedMembers()
+    {
+        Member member;
+
+        while ((member = (Member) _lapsedMembers.poll()) != null)
+        {
+            _members.remove(member);
+
+            if (member._loaned.compareAndSet(true, false))
+            {
+                LoanTrace loanTrace = member._loanTrace;
+
+                if (loanTrace != null)
+                    recordLeak(loanTrace);
+
+                endLoan();
+            }
+        }
     }
 
-    public synchronized void collect(Object item)
+    private void recordLeak(LoanTrace loanTrace)
+    {
+        _leakCount.incrementAndGet();
+
+        synchronized (_leaks)
+        {
+            _leaks.add(loanTrace);
+
+            if (_leaks.size() > MAX_LEAK_TRACES)
+                _leaks.remove(0);
+        }
+    }
+
+    /**
+     * Records where the loan of the provided member is made, when the loan is sampled.
+     */
+    private void startLoan(Member member)
+    {
+        int rate = _leakSampleRate;
+
+        if (rate > 0 && _loanSequence.incrementAndGet() % rate == 0)
+            member._loanTrace = new LoanTrace();
+
+        recordPeakActive(_activeCount.incrementAndGet());
+    }
+
+    private void endLoan()
+    {
+        _activeCount.decrementAndGet();
+
+        if (_loanPermits != null)
+            _loanPermits.release();
+    }
+
+    private boolean acquireLoanPermit(long maxWaitMillis) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+        while (true)
+        {
+            long wait = LAPSE_CHECK_NANOS;
+
+            if (maxWaitMillis >= 0)
+            {
+                long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0)
+                    return false;
+
+                wait = Math.min(wait, remaining);
+            }
+
+            if (_loanPermits.tryAcquire(wait, TimeUnit.NANOSECONDS))
+                return true;
+
+            expungeLapsedMembers();
+        }
+    }
+
+    /**
+     * Reserves a loan, waiting while the maximum number of objects are out on loan. This returns
+     * immediately when the loans are not limited.
+     * 
+     * @param maxWaitMillis
+     *            The maximum time to wait; a negative value waits indefinitely.
+     * @return Returns true if the loan is reserved, false if the wait timed out.
+     */
+    public boolean reserveLoan(long maxWaitMillis) throws InterruptedException
+    {
+        if (_loanPermits == null)
+            return true;
+
+        expungeLapsedMembers();
+
+        if (_loanPermits.tryAcquire())
+            return true;
+
+        if (maxWaitMillis == 0)
+        {
+            _timeoutCount.incrementAndGet();
+
+            return false;
+        }
+
+        long start = System.nanoTime();
+
+        _waitingCount.incrementAndGet();
+
+        try
+        {
+            boolean reserved = acquireLoanPermit(maxWaitMillis);
+
+            if (!reserved)
+                _timeoutCount.incrementAndGet();
+
+            return reserved;
+        }
+        finally
+        {
+            _waitingCount.decrementAndGet();
+            _waitCount.incrementAndGet();
+            _waitNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Cancels a loan reservation that was not used to loan an object, because the object could not
+     * be created for instance.
+     */
+    public void cancelLoan()
+    {
+        if (_loanPermits != null)
+            _loanPermits.release();
+    }
+
+    /**
+     * @return Returns the member record of the provided object, or null if it is not a member.
+     */
+    private Member findMember(Object item)
+    {
+        Lookup lookup = (Lookup) LOOKUP.get();
+
+        lookup._item = item;
+
+        try
+        {
+            return (Member) _members.get(lookup);
+        }
+        finally
+        {
+            lookup._item = null;
+        }
+    }
+
+    /**
+     * Returns the provided object, which must have been loaned by this pool, to the pool. The
+     * object is dropped if the pool is full, if it is returned twice or if it was not loaned by
+     * this pool.
+     */
+    public void collect(Object item)
     {
         if (item == null)
             return;
 
-        Object comp = null;
+        Member member = findMember(item);
+
+        if (member != null)
+            collect(member, item);
+    }
+
+    /**
+     * Returns the object of the provided loan, which must have been made by this pool, to the pool.
+     * The object is dropped if the pool is full. Returning a loan more than once has no effect.
+     */
+    public void collectLoan(Loan loan)
+    {
+        if (loan.close())
+            collect(loan._member, loan._item);
+    }
+
+    private void collect(Member member, Object item)
+    {
+        // Only the thread that ends the loan may pool the object
+        if (!member._loaned.compareAndSet(true, false))
+            return;
+
+        member._loanTrace = null;
 
-        // Do NOT use iterator here. If the collecting item is an unrealized proxy, the invocation
-        // of the equals would cause it to realize which will lead to
-        // ConcurrentModificationException
-        for (int i = 0; i < _loanedObjects.size(); i++)
+        // The object must be idle before the loan ends, for a waiting reservation to find it. When
+        // the pool is full, the object is no longer tracked.
+        if (!idle(member, item))
+            _members.remove(member);
+
+        endLoan();
+    }
+
+    /**
+     * Ends the loan of the provided object, which must have been loaned by this pool, and drops the
+     * object from the pool, because it turned out to be unusable for instance. The loan
+     * reservation, if any, is kept for a replacement object to be loaned or created and registered
+     * via {@link #loaned(Object)}.
+     */
+    public void discard(Object item)
+    {
+        if (item == null)
+            return;
+
+        Member member = findMember(item);
+
+        if (member != null)
+            discard(member);
+    }
+
+    /**
+     * Ends the provided loan, which must have been made by this pool, and drops its object from the
+     * pool, like {@link #discard(Object)}.
+     */
+    public void discardLoan(Loan loan)
+    {
+        if (loan.close())
+            discard(loan._member);
+    }
+
+    private void discard(Member member)
+    {
+        if (!member._loaned.compareAndSet(true, false))
+            return;
+
+        member._loanTrace = null;
+
+        _members.remove(member);
+
+        _activeCount.decrementAndGet();
+    }
+
+    /**
+     * @return Returns true if the provided member was placed in a slot, false if the pool is full.
+     */
+    private boolean idle(Member member, Object item)
+    {
+        member._idleSince = System.currentTimeMillis();
+        member._idle = item;
+
+        int capacity = _capacity;
+        int start = startSlot(capacity);
+
+        for (int i = 0; i < capacity; i++)
         {
-            SoftReference ref = (SoftReference) _loanedObjects.get(i);
+            int slot = (start + i) % capacity;
 
-            Object referent = ref.get();
+            Member current = (Member) _slots.get(slot);
 
-            // The collecting object could be a proxy and hence the equals should be invoked on
-            // the collecting object; the referent is always a concrete object.
-            if (referent == null || item.equals(referent))
-                _loanedObjects.remove(i);
+            if ((current == null || current.getIdle() == null)
+                && _slots.compareAndSet(slot, current, member))
+                return true;
+        }
 
-            if (item.equals(referent))
-                comp = referent;
+        member._idle = null;
+
+        return false;
+    }
 
-            // Continue even after finding the component, to remove null references from the pool.
+    /**
+     * Adds the provided object, created outside of this pool, to the pool as an idle object; to
+     * fill the pool ahead of the loans for instance.
+     * 
+     * @return Returns true if the object was added, false if the pool is full or the object is
+     *         already a member.
+     */
+    public boolean addIdle(Object item)
+    {
+        expungeLapsedMembers();
+
+        Member member = new Member(item, _lapsedMembers, false);
+
+        if (_members.putIfAbsent(member, member) != null)
+            return false;
+
+        if (idle(member, item))
+            return true;
+
+        _members.remove(member);
+
+        return false;
+    }
+
+    /**
+     * Evicts the objects that have been idle for longer than the provided timeout, while more than
+     * the provided number of objects are idle.
+     * 
+     * @return Returns the number of objects evicted.
+     */
+    public int evict(long idleTimeoutMillis, int minIdle)
+    {
+        expungeLapsedMembers();
+
+        long idleLimit = System.currentTimeMillis() - idleTimeoutMillis;
+
+        int idleCount = getIdleCount();
+        int evicted = 0;
+
+        for (int i = 0; i < _maxSize && idleCount > minIdle; i++)
+        {
+            Member member = (Member) _slots.get(i);
+
+            if (member == null || member.getIdle() == null || member._idleSince > idleLimit)
+                continue;
+
+            // A loan may have claimed the member in the meantime
+            if (!_slots.compareAndSet(i, member, null))
+                continue;
+
+            member._idle = null;
+
+            _members.remove(member);
+
+            idleCount--;
+            evicted++;
         }
 
-        if (comp != null && _pooledObjects.size() <= _maxSize)
-            _pooledObjects.add(new SoftReference(comp));
+        _evictionCount.addAndGet(evicted);
+
+        return evicted;
     }
 
-    public synchronized Object loan()
+    /**
+     * Changes the number of slots in use to the provided capacity, bounded by the maximum size of
+     * the pool. The idle objects beyond the new capacity are evicted.
+     * 
+     * @return Returns the new capacity.
+     */
+    public int resize(int capacity)
     {
-        for (int i = 1; i <= _pooledObjects.size(); i++)
+        capacity = Math.max(1, Math.min(capacity, _maxSize));
+
+        _capacity = capacity;
+
+        int evicted = 0;
+
+        // The objects being idled concurrently with a shrink are evicted by the next resize
+        for (int i = capacity; i < _maxSize; i++)
+        {
+            Member member = (Member) _slots.get(i);
+
+            if (member == null || !_slots.compareAndSet(i, member, null))
+                continue;
+
+            member._idle = null;
+
+            _members.remove(member);
+
+            evicted++;
+        }
+
+        _evictionCount.addAndGet(evicted);
+
+        return capacity;
+    }
+
+    /**
+     * Adapts the capacity of the pool to the demand since the last adaptation. The pool grows to
+     * the largest number of objects out on loan when that exceeds the capacity and more than one in
+     * ten loans missed an idle object, and shrinks halfway towards that number when it is below the
+     * capacity; but never below the provided minimum size or above the maximum size of the pool.
+     * 
+     * @return Returns the new capacity.
+     */
+    public int adapt(int minSize)
+    {
+        long loans = _recentLoans.getAndSet(0);
+        long misses = _recentMisses.getAndSet(0);
+
+        int peak = _peakActive.getAndSet(_activeCount.get());
+
+        int capacity = _capacity;
+
+        // A short burst of loans that mostly found idle objects is not worth growing for
+        if (peak > capacity && misses * 10 > loans)
+            capacity = peak;
+
+        else if (peak < capacity)
+            capacity -= (capacity - peak + 1) / 2;
+
+        return resize(Math.max(capacity, minSize));
+    }
+
+    /**
+     * Claims an idle member and starts its loan. The idle object is left in the member for the
+     * caller to take.
+     * 
+     * @return Returns the claimed member, or null if there is no idle object.
+     */
+    private Member claimIdle()
+    {
+        _recentLoans.incrementAndGet();
+
+        int capacity = _capacity;
+        int start = startSlot(capacity);
+
+        for (int i = 0; i < capacity; i++)
         {
-            SoftReference ref = (SoftReference) _pooledObjects.remove(_pooledObjects.size() - i);
+            int slot = (start + i) % capacity;
 
-            Object comp = ref.get();
+            Member member = (Member) _slots.get(slot);
 
-            if (comp != null)
+            if (member == null || !_slots.compareAndSet(slot, member, null))
+                continue;
+
+            if (member.getIdle() != null)
             {
-                _loanedObjects.add(ref);
+                member._loaned.set(true);
+
+                startLoan(member);
 
-                return comp;
+                return member;
             }
+
+            _members.remove(member);
         }
 
+        _missCount.incrementAndGet();
+        _recentMisses.incrementAndGet();
+
         return null;
     }
 
-    public synchronized void loaned(Object item)
+    /**
+     * @return Returns an idle object from the pool, or null if there is none.
+     */
+    public Object loan()
+    {
+        Member member = claimIdle();
+
+        if (member == null)
+            return null;
+
+        Object item = member.getIdle();
+
+        member._idle = null;
+
+        return item;
+    }
+
+    /**
+     * @return Returns the loan of an idle object from the pool, or null if there is none.
+     */
+    public Loan borrow()
+    {
+        Member member = claimIdle();
+
+        if (member == null)
+            return null;
+
+        Loan loan = new Loan(member, member.getIdle());
+
+        member._idle = null;
+
+        return loan;
+    }
+
+    private void recordPeakActive(int activeCount)
+    {
+        int peak;
+
+        while ((peak = _peakActive.get()) < activeCount)
+        {
+            if (_peakActive.compareAndSet(peak, activeCount))
+                return;
+        }
+    }
+
+    /**
+     * Records that the provided object, created outside of this pool, is out on loan so it will be
+     * accepted by {@link #collect(Object)}. An object that is already a member keeps its member
+     * record; it is taken out of the pool if it is idle, and stays on its current loan otherwise,
+     * in which case the loan reservation, if any, is cancelled.
+     */
+    public void loaned(Object item)
+    {
+        newLoanedMember(item);
+    }
+
+    /**
+     * Records that the provided object, created outside of this pool, is out on loan, like
+     * {@link #loaned(Object)}.
+     * 
+     * @return Returns the loan of the provided object.
+     */
+    public Loan register(Object item)
+    {
+        return new Loan(newLoanedMember(item), item);
+    }
+
+    private Member newLoanedMember(Object item)
+    {
+        expungeLapsedMembers();
+
+        Member member = new Member(item, _lapsedMembers, true);
+
+        Member existing = (Member) _members.putIfAbsent(member, member);
+
+        if (existing == null)
+        {
+            startLoan(member);
+
+            return member;
+        }
+
+        // A member that stays in a slot would be loaned again by the pool
+        if (claimSlot(existing))
+        {
+            existing._loaned.set(true);
+
+            startLoan(existing);
+
+            existing._idle = null;
+        }
+        else
+            cancelLoan();
+
+        return existing;
+    }
+
+    /**
+     * Takes the provided member out of its slot, like {@link #claimIdle()}.
+     * 
+     * @return Returns true if the member was idle and is now claimed by the current thread.
+     */
+    private boolean claimSlot(Member member)
+    {
+        if (member.getIdle() == null)
+            return false;
+
+        for (int slot = 0; slot < _slots.length(); slot++)
+        {
+            if (_slots.get(slot) == member && _slots.compareAndSet(slot, member, null))
+                return member.getIdle() != null;
+        }
+
+        return false;
+    }
+
+    /**
+     * Samples the stack traces of one in the provided number of loans, for leak detection; zero or
+     * less to not sample any loans.
+     */
+    public void setLeakSampleRate(int rate)
+    {
+        _leakSampleRate = rate <= 0 ? 0 : rate;
+    }
+
+    /**
+     * @return Returns the number of sampled loans that leaked, whose objects were garbage-collected
+     *         before they were returned.
+     */
+    public long getLeakCount()
+    {
+        expungeLapsedMembers();
+
+        return _leakCount.get();
+    }
+
+    /**
+     * @return Returns the stack traces of the latest sampled loans that leaked, oldest first.
+     */
+    public List getLeaks()
+    {
+        expungeLapsedMembers();
+
+        synchronized (_leaks)
+        {
+            return new ArrayList(_leaks);
+        }
+    }
+
+    /**
+     * @return Returns the maximum number of objects out on loan, zero if the loans are not limited.
+     */
+    public int getMaxActive()
+    {
+        return _maxActive;
+    }
+
+    /**
+     * @return Returns the number of slots in use.
+     */
+    public int getCapacity()
+    {
+        return _capacity;
+    }
+
+    /**
+     * @return Returns the number of objects out on loan.
+     */
+    public int getActiveCount()
+    {
+        return _activeCount.get();
+    }
+
+    /**
+     * @return Returns the number of idle objects in the pool.
+     */
+    public int getIdleCount()
+    {
+        int count = 0;
+
+        for (int i = 0; i < _maxSize; i++)
+        {
+            Member member = (Member) _slots.get(i);
+
+            if (member != null && member.getIdle() != null)
+                count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return Returns the number of threads waiting for a loan reservation.
+     */
+    public int getWaitingCount()
+    {
+        return _waitingCount.get();
+    }
+
+    /**
+     * @return Returns the number of loan reservations that had to wait.
+     */
+    public long getWaitCount()
+    {
+        return _waitCount.get();
+    }
+
+    /**
+     * @return Returns the total time, in milliseconds, loan reservations have waited.
+     */
+    public long getTotalWaitMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_waitNanos.get());
+    }
+
+    /**
+     * @return Returns the number of loan reservations that timed out.
+     */
+    public long getTimeoutCount()
+    {
+        return _timeoutCount.get();
+    }
+
+    /**
+     * @return Returns the number of loans that found no idle object.
+     */
+    public long getMissCount()
+    {
+        return _missCount.get();
+    }
+
+    /**
+     * @return Returns the number of idle objects evicted.
+     */
+    public long getEvictionCount()
     {
-        if (_pooledObjects.size() + _loanedObjects.size() <= _maxSize)
-            _loanedObjects.add(new SoftReference(item));
+        return _evictionCount.get();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,248 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.util;
+
+/**
+ * This holds the configuration of the pool of a pooled component. Only the settings that are set
+ * explicitly are part of the configuration, the others are inherited from a default configuration
+ * via {@link #inherit(PoolConfiguration)}.
+ * 
+ * @see gravity.util.Pool
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class PoolConfiguration
+{
+    private Integer _maxSize;
+    private Integer _minSize;
+    private Boolean _adaptive;
+    private Integer _maxActive;
+    private Long    _maxWait;
+    private Integer _minIdle;
+    private Integer _prefillSize;
+    private Long    _idleTimeout;
+    private Long    _maintenanceInterval;
+    private String  _validationMethod;
+    private Integer _leakSampleRate;
+
+    private static int intValue(Integer value)
+    {
+        return value == null ? 0 : value.intValue();
+    }
+
+    private static long longValue(Long value)
+    {
+        return value == null ? 0 : value.longValue();
+    }
+
+    private static boolean booleanValue(Boolean value)
+    {
+        return value == null ? false : value.booleanValue();
+    }
+
+    /**
+     * @return Returns the maximum number of idle instances.
+     */
+    public int getMaxSize()
+    {
+        return intValue(_maxSize);
+    }
+
+    public void setMaxSize(int maxSize)
+    {
+        _maxSize = new Integer(maxSize);
+    }
+
+    /**
+     * @return Returns the number of idle instances below which an adaptive pool does not shrink.
+     */
+    public int getMinSize()
+    {
+        return intValue(_minSize);
+    }
+
+    public void setMinSize(int minSize)
+    {
+        _minSize = new Integer(minSize);
+    }
+
+    /**
+     * @return Returns true if the number of idle instances the pool holds adapts to the demand,
+     *         between the minimum and the maximum size; false if the pool holds up to its maximum
+     *         size.
+     */
+    public boolean isAdaptive()
+    {
+        return booleanValue(_adaptive);
+    }
+
+    public void setAdaptive(boolean adaptive)
+    {
+        _adaptive = Boolean.valueOf(adaptive);
+    }
+
+    /**
+     * @return Returns the maximum number of instances out on loan; zero for no limit.
+     */
+    public int getMaxActive()
+    {
+        return intValue(_maxActive);
+    }
+
+    public void setMaxActive(int maxActive)
+    {
+        _maxActive = new Integer(maxActive);
+    }
+
+    /**
+     * @return Returns the maximum time, in milliseconds, to wait for an instance when the maximum
+     *         number of instances are out on loan; a negative value waits indefinitely.
+     */
+    public long getMaxWait()
+    {
+        return longValue(_maxWait);
+    }
+
+    public void setMaxWait(long maxWait)
+    {
+        _maxWait = new Long(maxWait);
+    }
+
+    /**
+     * @return Returns the number of idle instances that the pool maintenance keeps in the pool.
+     */
+    public int getMinIdle()
+    {
+        return intValue(_minIdle);
+    }
+
+    public void setMinIdle(int minIdle)
+    {
+        _minIdle = new Integer(minIdle);
+    }
+
+    /**
+     * @return Returns the number of idle instances created when the container is loaded.
+     */
+    public int getPrefillSize()
+    {
+        return intValue(_prefillSize);
+    }
+
+    public void setPrefillSize(int prefillSize)
+    {
+        _prefillSize = new Integer(prefillSize);
+    }
+
+    /**
+     * @return Returns the time, in milliseconds, after which the pool maintenance evicts an idle
+     *         instance; zero to never evict idle instances.
+     */
+    public long getIdleTimeout()
+    {
+        return longValue(_idleTimeout);
+    }
+
+    public void setIdleTimeout(long idleTimeout)
+    {
+        _idleTimeout = new Long(idleTimeout);
+    }
+
+    /**
+     * @return Returns the time, in milliseconds, between two runs of the pool maintenance.
+     */
+    public long getMaintenanceInterval()
+    {
+        return longValue(_maintenanceInterval);
+    }
+
+    public void setMaintenanceInterval(long maintenanceInterval)
+    {
+        _maintenanceInterval = new Long(maintenanceInterval);
+    }
+
+    /**
+     * @return Returns the name of the method, that takes no arguments and returns a boolean, that
+     *         validates idle instances before they are loaned; null when the instances are not
+     *         validated.
+     */
+    public String getValidationMethod()
+    {
+        return _validationMethod;
+    }
+
+    public void setValidationMethod(String validationMethod)
+    {
+        _validationMethod = validationMethod;
+    }
+
+    /**
+     * @return Returns the number of loans per sampled loan, for leak detection; zero to not detect
+     *         leaks.
+     */
+    public int getLeakSampleRate()
+    {
+        return intValue(_leakSampleRate);
+    }
+
+    public void setLeakSampleRate(int leakSampleRate)
+    {
+        _leakSampleRate = new Integer(leakSampleRate);
+    }
+
+    /**
+     * @return Returns true if the pool maintenance has any work to do with this configuration.
+     */
+    public boolean requiresMaintenance()
+    {
+        return getMaintenanceInterval() > 0
+            && (getMinIdle() > 0 || getIdleTimeout() > 0 || isAdaptive());
+    }
+
+    /**
+     * @return Returns a new configuration with the settings of this configuration, and the settings
+     *         of the provided configuration where they are not set in this configuration.
+     */
+    public PoolConfiguration inherit(PoolConfiguration defaults)
+    {
+        PoolConfiguration config = new PoolConfiguration();
+
+        config._maxSize = _maxSize == null ? defaults._maxSize : _maxSize;
+        config._minSize = _minSize == null ? defaults._minSize : _minSize;
+        config._adaptive = _adaptive == null ? defaults._adaptive : _adaptive;
+        config._maxActive = _maxActive == null ? defaults._maxActive : _maxActive;
+        config._maxWait = _maxWait == null ? defaults._maxWait : _maxWait;
+        config._minIdle = _minIdle == null ? defaults._minIdle : _minIdle;
+        config._prefillSize = _prefillSize == null ? defaults._prefillSize : _prefillSize;
+        config._idleTimeout = _idleTimeout == null ? defaults._idleTimeout : _idleTimeout;
+        config._maintenanceInterval = _maintenanceInterval == null ? defaults._maintenanceInterval
+            : _maintenanceInterval;
+        config._validationMethod = _validationMethod == null ? defaults._validationMethod
+            : _validationMethod;
+        config._leakSampleRate = _leakSampleRate == null ? defaults._leakSampleRate
+            : _leakSampleRate;
+
+        return config;
+    }
+
+    public String toString()
+    {
+        return "[Max Size: " + _maxSize + ", Min Size: " + _minSize + ", Adaptive: " + _adaptive
+            + ", Max Active: " + _maxActive + ", Max Wait: " + _maxWait + ", Min Idle: " + _minIdle
+            + ", Prefill Size: " + _prefillSize + ", Idle Timeout: " + _idleTimeout
+            + ", Maintenance Interval: " + _maintenanceInterval + ", Validation Method: "
+            + _validationMethod + ", Leak Sample Rate: " + _leakSampleRate + "]";
+    }
+}
@@ -18,14 +18,29 @@ import gravity.Component;
 import gravity.ExceptionWrapper;
 import gravity.UsageException;
 
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Static utility methods for handling reflection.
+ * <p>
+ * The public constructors of a class, and its public methods by name, are cached with their
+ * parameter types, so repeated invocations only match the arguments against these candidates, which
+ * does not allocate. The cache holds nothing but members of the class itself, so it does not keep
+ * argument classes from being unloaded; the candidates of a class are held softly and under a weak
+ * reference to the class, so neither is the class itself.
+ * <p>
+ * Misses are cached per class and name as well: a name without members is cached with no
+ * candidates, and arguments that match none of the candidates are rejected without reflecting on
+ * the class again. A miss is not cached per argument types, as that would have to hold the argument
+ * classes; the cost of a miss is the exception that reports it.
  * 
  * @author Howard Lewis Ship
  * @author Harish Krishnaswamy
@@ -33,8 +48,72 @@ import java.util.Map;
  */
 public class ReflectUtils
 {
+    /**
+     * The name under which constructors are cached; no method can have this name.
+     */
+    private static final String CONSTRUCTOR_NAME = "<init>";
+
+    /**
+     * Holds the public constructors, or the public methods of a name, of a class in the order
+     * they are searched, with their parameter types.
+     */
+    private static final class Candidates
+    {
+        private final Object[]  _members;
+        private final Class[][] _paramTypes;
+
+        private Candidates(Object[] members, Class[][] paramTypes)
+        {
+            _members = members;
+            _paramTypes = paramTypes;
+        }
+
+        private Object find(Object[] args)
+        {
+            for (int i = 0; i < _members.length; i++)
+            {
+                if (isMatch(_paramTypes[i], args))
+                    return _members[i];
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Holds the candidates of a class by name. The candidates refer to their class, so they are held
+     * softly to let the class be unloaded; they are simply rebuilt if they are reclaimed.
+     */
+    private static final class Resolutions
+    {
+        private volatile SoftReference _map = new SoftReference(new ConcurrentHashMap());
+
+        private synchronized Map getMap()
+        {
+            Map map = (Map) _map.get();
+
+            if (map == null)
+            {
+                map = new ConcurrentHashMap();
+
+                _map = new SoftReference(map);
+            }
+
+            return map;
+        }
+
+        private Map get()
+        {
+            Map map = (Map) _map.get();
+
+            return map == null ? getMap() : map;
+        }
+    }
+
     private ExceptionWrapper _exceptionWrapper;
 
+    private WeakClassMap     _resolutions = new WeakClassMap();
+
     public ReflectUtils(ExceptionWrapper exceptionWrapper)
     {
         _exceptionWrapper = exceptionWrapper;
@@ -79,7 +158,7 @@ public class ReflectUtils
         return buf.toString();
     }
 
-    private boolean isCompatible(Class paramType, Class valueType)
+    private static boolean isCompatible(Class paramType, Class valueType)
     {
         if (paramType.isAssignableFrom(valueType))
             return true;
@@ -97,14 +176,16 @@ public class ReflectUtils
         return false;
     }
 
-    private boolean isMatch(Class[] paramTypes, Class[] valueTypes)
+    private static boolean isMatch(Class[] paramTypes, Object[] args)
     {
-        if (paramTypes.length != valueTypes.length)
+        int length = args == null ? 0 : args.length;
+
+        if (paramTypes.length != length)
             return false;
 
-        for (int i = 0; i < paramTypes.length; i++)
+        for (int i = 0; i < length; i++)
         {
-            if (valueTypes[i] == null)
+            if (args[i] == null)
             {
                 if (paramTypes[i].isPrimitive())
                     return false;
@@ -112,25 +193,55 @@ public class ReflectUtils
                 continue;
             }
 
-            if (!isCompatible(paramTypes[i], valueTypes[i]))
+            if (!isCompatible(paramTypes[i], args[i].getClass()))
                 return false;
         }
 
         return true;
     }
 
-    private Constructor findConstructor(Class targetClass, Class[] argTypes)
+    private Map getResolutions(Class targetClass)
+    {
+        Resolutions resolutions = (Resolutions) _resolutions.get(targetClass);
+
+        if (resolutions == null)
+            resolutions = (Resolutions) _resolutions.putIfAbsent(targetClass, new Resolutions());
+
+        return resolutions.get();
+    }
+
+    private Candidates resolveConstructors(Class targetClass)
     {
         Constructor[] constructors = targetClass.getConstructors();
 
+        Class[][] paramTypes = new Class[constructors.length][];
+
         for (int i = 0; i < constructors.length; i++)
+            paramTypes[i] = constructors[i].getParameterTypes();
+
+        return new Candidates(constructors, paramTypes);
+    }
+
+    private Constructor findConstructor(Class targetClass, Object[] args)
+    {
+        Map resolutions = getResolutions(targetClass);
+
+        Candidates candidates = (Candidates) resolutions.get(CONSTRUCTOR_NAME);
+
+        if (candidates == null)
         {
-            if (isMatch(constructors[i].getParameterTypes(), argTypes))
-                return constructors[i];
+            candidates = resolveConstructors(targetClass);
+
+            resolutions.put(CONSTRUCTOR_NAME, candidates);
         }
 
-        throw _exceptionWrapper.wrap(new UsageException(), Message.CANNOT_FIND_CONSTRUCTOR,
-            targetClass.getName(), typesToString(argTypes));
+        Object ctor = candidates.find(args);
+
+        if (ctor == null)
+            throw _exceptionWrapper.wrap(new UsageException(), Message.CANNOT_FIND_CONSTRUCTOR,
+                targetClass.getName(), typesToString(getTypes(args)));
+
+        return (Constructor) ctor;
     }
 
     private Class[] getTypes(Object[] args)
@@ -146,6 +257,39 @@ public class ReflectUtils
         return argTypes;
     }
 
+    /**
+     * Searches for a public constructor of the provided class that accepts the provided arguments.
+     * 
+     * @param args
+     *            the parameters to be passed to the constructor (may be null or empty)
+     * @throws UsageException
+     *             {@link Message#CANNOT_FIND_CONSTRUCTOR}
+     */
+    public Constructor getConstructor(Class targetClass, Object[] args)
+    {
+        return findConstructor(targetClass, args);
+    }
+
+    /**
+     * Invokes the provided constructor with the provided arguments.
+     * 
+     * @return the new instance
+     * @throws WrapperException
+     *             {@link Message#CANNOT_INVOKE_CONSTRUCTOR}
+     */
+    public Object invokeConstructor(Constructor ctor, Object[] args)
+    {
+        try
+        {
+            return ctor.newInstance(args);
+        }
+        catch (Exception e)
+        {
+            throw _exceptionWrapper.wrap(e, Message.CANNOT_INVOKE_CONSTRUCTOR,
+                ctor.getDeclaringClass(), typesToString(ctor.getParameterTypes()));
+        }
+    }
+
     /**
      * Searches for a constructor matching against the provided arguments.
      * 
@@ -159,38 +303,73 @@ public class ReflectUtils
      */
     public Object invokeConstructor(Class targetClass, Object[] args)
     {
-        Class[] argTypes = null;
-
         try
         {
-            argTypes = getTypes(args);
-
-            Constructor ctor = findConstructor(targetClass, argTypes);
+            Constructor ctor = findConstructor(targetClass, args);
 
             return ctor.newInstance(args);
         }
         catch (Exception e)
         {
             throw _exceptionWrapper.wrap(e, Message.CANNOT_INVOKE_CONSTRUCTOR, targetClass,
-                typesToString(argTypes));
+                typesToString(getTypes(args)));
         }
     }
 
-    private Method findMethod(Class targetClass, String methodName, Class[] argTypes)
+    private Candidates resolveMethods(Class targetClass, String methodName)
     {
         Method[] methods = targetClass.getMethods();
 
+        List named = new ArrayList();
+
         for (int i = 0; i < methods.length; i++)
         {
-            if (!methods[i].getName().equals(methodName))
-                continue;
+            if (methods[i].getName().equals(methodName))
+                named.add(methods[i]);
+        }
+
+        Method[] members = (Method[]) named.toArray(new Method[named.size()]);
+
+        Class[][] paramTypes = new Class[members.length][];
+
+        for (int i = 0; i < members.length; i++)
+            paramTypes[i] = members[i].getParameterTypes();
 
-            if (isMatch(methods[i].getParameterTypes(), argTypes))
-                return methods[i];
+        return new Candidates(members, paramTypes);
+    }
+
+    private Method findMethod(Class targetClass, String methodName, Object[] args)
+    {
+        Map resolutions = getResolutions(targetClass);
+
+        Candidates candidates = (Candidates) resolutions.get(methodName);
+
+        if (candidates == null)
+        {
+            candidates = resolveMethods(targetClass, methodName);
+
+            resolutions.put(methodName, candidates);
         }
 
-        throw _exceptionWrapper.wrap(new UsageException(), Message.CANNOT_FIND_METHOD, methodName,
-            typesToString(argTypes), targetClass);
+        Object method = candidates.find(args);
+
+        if (method == null)
+            throw _exceptionWrapper.wrap(new UsageException(), Message.CANNOT_FIND_METHOD,
+                methodName, typesToString(getTypes(args)), targetClass);
+
+        return (Method) method;
+    }
+
+    /**
+     * Searches for a public method of the provided class with the provided name that accepts the
+     * provided arguments.
+     * 
+     * @throws UsageException
+     *             {@link Message#CANNOT_FIND_METHOD}
+     */
+    public Method getMethod(Class targetClass, String methodName, Object[] args)
+    {
+        return findMethod(targetClass, methodName, args);
     }
 
     /**
@@ -200,11 +379,7 @@ public class ReflectUtils
      */
     public Object invokeMethod(Object target, String methodName, Object[] args)
     {
-        Class[] argTypes = null;
-
-        argTypes = getTypes(args);
-
-        Method method = findMethod(target.getClass(), methodName, argTypes);
+        Method method = findMethod(target.getClass(), methodName, args);
 
         return invokeMethod(target, method, args, null);
     }
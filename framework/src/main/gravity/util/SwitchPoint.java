@@ -0,0 +1,44 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.util;
+
+/**
+ * A switch point guards state that is derived from some other, rarely changing, state. Holders of
+ * the derived state keep the switch point that was current when they derived it and re-derive the
+ * state only once the switch point is invalidated. The owner of the original state invalidates the
+ * current switch point, and replaces it with a new one, whenever the original state changes.
+ * <p>
+ * A switch point starts out valid and, once invalidated, never becomes valid again.
+ *
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public final class SwitchPoint
+{
+    private volatile boolean _valid = true;
+
+    /**
+     * @return Returns true until this switch point is invalidated.
+     */
+    public boolean isValid()
+    {
+        return _valid;
+    }
+
+    public void invalidate()
+    {
+        _valid = false;
+    }
+}
@@ -0,0 +1,137 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.util;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * This is a map keyed by classes that holds its keys weakly, so classes (and their class loaders)
+ * can be unloaded even when this map is reachable from a static field. The values are held strongly
+ * and hence must not refer back to their key class, or the key will never be unloaded.
+ * <p>
+ * Lookups are lock free and allocation free; the entries are immutable and the table is copied on
+ * every addition, so this map is intended for mostly read, rarely written data that is keyed by a
+ * class, like caches of reflective information. Entries of unloaded classes are purged on addition.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class WeakClassMap
+{
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final class Entry extends WeakReference
+    {
+        private final int    _hash;
+        private final Object _value;
+        private final Entry  _next;
+
+        private Entry(Class clazz, int hash, Object value, Entry next)
+        {
+            super(clazz);
+
+            _hash = hash;
+            _value = value;
+            _next = next;
+        }
+    }
+
+    private volatile Entry[] _table = new Entry[INITIAL_CAPACITY];
+
+    private static int hash(Class clazz)
+    {
+        return System.identityHashCode(clazz);
+    }
+
+    /**
+     * @return Returns the value mapped to the provided class or null if there is none.
+     */
+    public Object get(Class clazz)
+    {
+        Entry[] table = _table;
+
+        int hash = hash(clazz);
+
+        for (Entry e = table[hash & (table.length - 1)]; e != null; e = e._next)
+        {
+            // Cleared entries never match as the provided class is always reachable
+            if (e._hash == hash && e.get() == clazz)
+                return e._value;
+        }
+
+        return null;
+    }
+
+    /**
+     * Maps the provided value to the provided class unless the class is already mapped.
+     * 
+     * @return Returns the value already mapped to the provided class or the provided value if the
+     *         class was not mapped before.
+     */
+    public synchronized Object putIfAbsent(Class clazz, Object value)
+    {
+        if (clazz == null || value == null)
+            throw new IllegalArgumentException("Class and value must not be null.");
+
+        Object existing = get(clazz);
+
+        if (existing != null)
+            return existing;
+
+        Entry[] table = _table;
+
+        int size = 1;
+
+        for (int i = 0; i < table.length; i++)
+        {
+            for (Entry e = table[i]; e != null; e = e._next)
+            {
+                if (e.get() != null)
+                    size++;
+            }
+        }
+
+        int capacity = INITIAL_CAPACITY;
+
+        while (capacity < size * 2)
+            capacity <<= 1;
+
+        Entry[] newTable = new Entry[capacity];
+
+        for (int i = 0; i < table.length; i++)
+        {
+            for (Entry e = table[i]; e != null; e = e._next)
+            {
+                Class key = (Class) e.get();
+
+                if (key != null)
+                    add(newTable, key, e._hash, e._value);
+            }
+        }
+
+        add(newTable, clazz, hash(clazz), value);
+
+        _table = newTable;
+
+        return value;
+    }
+
+    private void add(Entry[] table, Class clazz, int hash, Object value)
+    {
+        int index = hash & (table.length - 1);
+
+        table[index] = new Entry(clazz, hash, value, table[index]);
+    }
+}
@@ -14,11 +14,16 @@
 
 package gravity;
 
+import gravity.impl.DefaultApplicationContext;
+import gravity.impl.DefaultContainer;
 import gravity.util.ClassUtils;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
 
@@ -28,6 +33,85 @@ import junit.framework.TestCase;
  */
 public class GravityTestCase extends TestCase
 {
+    /**
+     * Map from class to the number of its instances counted by {@link #countInstance(Class)}.
+     */
+    private static final ConcurrentMap INSTANCE_COUNTS = new ConcurrentHashMap();
+
+    private static AtomicInteger getInstanceCounter(Class clazz)
+    {
+        AtomicInteger counter = (AtomicInteger) INSTANCE_COUNTS.get(clazz);
+
+        if (counter == null)
+        {
+            INSTANCE_COUNTS.putIfAbsent(clazz, new AtomicInteger());
+
+            counter = (AtomicInteger) INSTANCE_COUNTS.get(clazz);
+        }
+
+        return counter;
+    }
+
+    /**
+     * Counts an instance of the provided class; to be called from the constructors of the
+     * component implementations that tests count.
+     * 
+     * @return Returns the number of instances counted including this one.
+     */
+    protected static int countInstance(Class clazz)
+    {
+        return getInstanceCounter(clazz).incrementAndGet();
+    }
+
+    /**
+     * @return Returns the number of instances of the provided class counted since the last
+     *         {@link #resetInstanceCount(Class)}.
+     */
+    protected static int getInstanceCount(Class clazz)
+    {
+        return getInstanceCounter(clazz).get();
+    }
+
+    protected static void resetInstanceCount(Class clazz)
+    {
+        getInstanceCounter(clazz).set(0);
+    }
+
+    /**
+     * @return Returns the container of a new framework that does not load plugins.
+     */
+    protected DefaultContainer newContainer()
+    {
+        return newContainer(new Object[0]);
+    }
+
+    /**
+     * @return Returns the container of a new framework that does not load plugins, with the
+     *         provided context item in addition to the defaults.
+     */
+    protected DefaultContainer newContainer(Object key, Object value)
+    {
+        return newContainer(new Object[]{key, value});
+    }
+
+    /**
+     * @param contextItems
+     *            the keys and values of the context items to add to the defaults, in turns
+     * @return Returns the container of a new framework that does not load plugins.
+     */
+    protected DefaultContainer newContainer(Object[] contextItems)
+    {
+        DefaultApplicationContext appContext = new DefaultApplicationContext("test", null);
+        appContext.putContextItem(MutableContainer.PLUGINS_AUTOLOAD_KEY, Boolean.FALSE);
+
+        for (int i = 0; i < contextItems.length; i += 2)
+            appContext.putContextItem(contextItems[i], contextItems[i + 1]);
+
+        appContext.initializeFramework();
+
+        return (DefaultContainer) appContext.getMutableContainer();
+    }
+
     protected void unreachable()
     {
         fail("ERROR: Reached unreachable code.");
@@ -55,13 +139,13 @@ public class GravityTestCase extends TestCase
         }
         catch (Exception e)
         {
-            throw WrapperException.wrap(e);
+            throw new RuntimeException(e);
         }
     }
 
     protected void writePluginFile(String pluginProp)
     {
-        String path = ClassUtils.getResource(Gravity.PLUGIN_MANIFEST_FILE_PATH).getFile();
+        String path = new ClassUtils().getResource("META-INF/gravity-plugin.properties").getFile();
 
         writeFile(path, pluginProp);
     }
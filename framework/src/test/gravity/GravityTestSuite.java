@@ -15,25 +15,46 @@
 package gravity;
 
 import gravity.impl.CglibComponentProxyTest;
+import gravity.impl.CloningComponentStrategyTest;
 import gravity.impl.ComponentFactoryTest;
+import gravity.impl.ComponentHandleTest;
+import gravity.impl.ComponentInvocationHandlerTest;
 import gravity.impl.ComponentKeyTest;
+import gravity.impl.ComponentProxyCachingTest;
 import gravity.impl.ComponentProxyFactoryTest;
 import gravity.impl.ComponentTest;
+import gravity.impl.ConstructionPlanTest;
 import gravity.impl.DefaultComponentTest;
+import gravity.impl.DefaultContainerConcurrencyTest;
 import gravity.impl.DefaultContainerTest;
+import gravity.impl.DirectInjectionTest;
 import gravity.impl.DispatchingComponentStrategyTest;
 import gravity.impl.DynamicWeaverFactoryTest;
+import gravity.impl.GeneratedComponentProxyTest;
 import gravity.impl.JdkComponentProxyTest;
+import gravity.impl.PooledComponentTest;
 import gravity.impl.PoolingComponentStrategyTest;
+import gravity.impl.PrefetchingComponentStrategyTest;
+import gravity.impl.ReclaimableSingletonComponentStrategyTest;
+import gravity.impl.RefreshingComponentStrategyTest;
+import gravity.impl.ScopedComponentStrategyTest;
 import gravity.impl.SingletonComponentStrategyTest;
+import gravity.impl.SingletonInitializationTest;
+import gravity.impl.StripedComponentStrategyTest;
+import gravity.impl.ThreadAffinityComponentStrategyTest;
 import gravity.impl.ThreadLocalComponentStrategyTest;
+import gravity.impl.ThreadLocalReclamationTest;
 import gravity.plugins.BshPluginHelperTest;
 import gravity.plugins.BshPluginTest;
 import gravity.plugins.MutableContainerAdapterTest;
 import gravity.util.ClassUtilsTest;
 import gravity.util.CleanableThreadLocalTest;
+import gravity.util.CleaningExecutorServiceTest;
+import gravity.util.PoolTest;
+import gravity.util.ReflectUtilsCacheTest;
 import gravity.util.ReflectUtilsTest;
 import gravity.util.UtilsTest;
+import gravity.util.WeakClassMapTest;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
@@ -64,18 +85,35 @@ public class GravityTestSuite
 
         // gravity.impl package tests
         suite.addTestSuite(CglibComponentProxyTest.class);
+        suite.addTestSuite(CloningComponentStrategyTest.class);
         suite.addTestSuite(ComponentFactoryTest.class);
+        suite.addTestSuite(ComponentHandleTest.class);
+        suite.addTestSuite(ComponentInvocationHandlerTest.class);
         suite.addTestSuite(ComponentKeyTest.class);
+        suite.addTestSuite(ComponentProxyCachingTest.class);
         suite.addTestSuite(ComponentProxyFactoryTest.class);
         suite.addTestSuite(ComponentTest.class);
+        suite.addTestSuite(ConstructionPlanTest.class);
         suite.addTestSuite(DefaultComponentTest.class);
+        suite.addTestSuite(DefaultContainerConcurrencyTest.class);
         suite.addTestSuite(DefaultContainerTest.class);
+        suite.addTestSuite(DirectInjectionTest.class);
         suite.addTestSuite(DispatchingComponentStrategyTest.class);
         suite.addTestSuite(DynamicWeaverFactoryTest.class);
+        suite.addTestSuite(GeneratedComponentProxyTest.class);
         suite.addTestSuite(JdkComponentProxyTest.class);
+        suite.addTestSuite(PooledComponentTest.class);
         suite.addTestSuite(PoolingComponentStrategyTest.class);
+        suite.addTestSuite(PrefetchingComponentStrategyTest.class);
+        suite.addTestSuite(ReclaimableSingletonComponentStrategyTest.class);
+        suite.addTestSuite(RefreshingComponentStrategyTest.class);
+        suite.addTestSuite(ScopedComponentStrategyTest.class);
         suite.addTestSuite(SingletonComponentStrategyTest.class);
+        suite.addTestSuite(SingletonInitializationTest.class);
+        suite.addTestSuite(StripedComponentStrategyTest.class);
+        suite.addTestSuite(ThreadAffinityComponentStrategyTest.class);
         suite.addTestSuite(ThreadLocalComponentStrategyTest.class);
+        suite.addTestSuite(ThreadLocalReclamationTest.class);
 
         // gravity.plugins package tests
         suite.addTestSuite(BshPluginHelperTest.class);
@@ -85,8 +123,12 @@ public class GravityTestSuite
         // gravity.util package tests
         suite.addTestSuite(ClassUtilsTest.class);
         suite.addTestSuite(CleanableThreadLocalTest.class);
+        suite.addTestSuite(CleaningExecutorServiceTest.class);
+        suite.addTestSuite(PoolTest.class);
+        suite.addTestSuite(ReflectUtilsCacheTest.class);
         suite.addTestSuite(ReflectUtilsTest.class);
         suite.addTestSuite(UtilsTest.class);
+        suite.addTestSuite(WeakClassMapTest.class);
 
         //$JUnit-END$
 
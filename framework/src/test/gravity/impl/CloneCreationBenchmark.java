@@ -0,0 +1,125 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentCallback;
+import gravity.ComponentKey;
+import gravity.ComponentPhase;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the cost of creating instances of a component through its constructor, with the
+ * default, prototype like, strategy, against copying a template with the cloning strategy. The
+ * component fills a table in its constructor and is initialized with a callback. This is not a
+ * unit test, run it from the command line with an optional iteration count:
+ * 
+ * <pre>
+ *   java gravity.impl.CloneCreationBenchmark [iterations]
+ * </pre>
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class CloneCreationBenchmark
+{
+    private static final int ROUNDS = 5;
+
+    /**
+     * This is expensive to construct and cheap to copy.
+     */
+    public static class Table extends HashMap
+    {
+        public Table()
+        {
+            for (int i = 0; i < 64; i++)
+                put("key" + i, Integer.toHexString(i * 31));
+        }
+    }
+
+    private MutableContainer _container;
+    private ComponentKey     _constructedKey;
+    private ComponentKey     _clonedKey;
+
+    /**
+     * Prevents the JIT from eliminating the creations.
+     */
+    private int              _sink;
+
+    public CloneCreationBenchmark()
+    {
+        DefaultApplicationContext appContext = new DefaultApplicationContext("benchmark", null);
+        appContext.putContextItem(MutableContainer.PLUGINS_AUTOLOAD_KEY, Boolean.FALSE);
+
+        appContext.initializeFramework();
+
+        _container = appContext.getMutableContainer();
+
+        ComponentCallback[] callbacks = {new ComponentCallback("put", new Object[]{"started",
+            Boolean.TRUE}, ComponentPhase.START_UP)};
+
+        _constructedKey = _container.getComponentKey(Map.class, "constructed");
+        _clonedKey = _container.getComponentKey(Map.class, "cloned");
+
+        _container.registerComponentImplementation(_constructedKey, Table.class, null, callbacks);
+        _container.registerComponentImplementation(_clonedKey, Table.class, null, callbacks);
+
+        _container.wrapComponentStrategy(_clonedKey, DefaultComponentStrategyType.CLONING);
+    }
+
+    private long timeCreation(ComponentKey key, int iterations)
+    {
+        long start = System.nanoTime();
+
+        // Every proxy realizes its own instance on the first call
+        for (int i = 0; i < iterations; i++)
+            _sink += ((Map) _container.getComponentInstance(key)).size();
+
+        return System.nanoTime() - start;
+    }
+
+    private static String perOp(long nanos, int iterations)
+    {
+        return (nanos / iterations) + " ns/op";
+    }
+
+    public void run(int iterations)
+    {
+        // Warm up both paths
+        timeCreation(_constructedKey, iterations);
+        timeCreation(_clonedKey, iterations);
+
+        for (int i = 0; i < ROUNDS; i++)
+        {
+            long ctorNanos = timeCreation(_constructedKey, iterations);
+            long cloneNanos = timeCreation(_clonedKey, iterations);
+
+            System.out.println("Round " + (i + 1) + ": constructor " + perOp(ctorNanos, iterations)
+                + ", clone " + perOp(cloneNanos, iterations));
+        }
+
+        System.out.println("(" + _sink + ")");
+    }
+
+    public static void main(String[] args)
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        new CloneCreationBenchmark().run(iterations);
+    }
+}
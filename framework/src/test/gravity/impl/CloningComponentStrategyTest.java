@@ -0,0 +1,169 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentCallback;
+import gravity.ComponentKey;
+import gravity.ComponentPhase;
+import gravity.GravityTestCase;
+import gravity.plugins.CloningComponentStrategyType;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class CloningComponentStrategyTest extends GravityTestCase
+{
+    public static interface Template extends List
+    {
+        int getSerial();
+    }
+
+    public static class TemplateList extends ArrayList implements Template
+    {
+        private int _serial;
+
+        public TemplateList()
+        {
+            countInstance(TemplateList.class);
+        }
+
+        public TemplateList(TemplateList template)
+        {
+            super(template);
+        }
+
+        public TemplateList copy()
+        {
+            return new TemplateList(this);
+        }
+
+        public void resetSerial()
+        {
+            _serial = countInstance(TemplateList.class);
+        }
+
+        public int getSerial()
+        {
+            return _serial;
+        }
+    }
+
+    private DefaultContainer _container;
+
+    protected void setUp()
+    {
+        _container = newContainer();
+
+        resetInstanceCount(TemplateList.class);
+    }
+
+    private ComponentKey register(Class compIntf, ComponentCallback[] callbacks)
+    {
+        ComponentKey key = _container.getComponentKey(compIntf);
+
+        _container.registerComponentImplementation(key, TemplateList.class, null, callbacks);
+
+        return key;
+    }
+
+    private Template getInstance(ComponentKey key)
+    {
+        return (Template) _container.getComponentInstance(key);
+    }
+
+    public void testServesCopiesOfTemplate()
+    {
+        ComponentCallback[] callbacks = {
+            new ComponentCallback("add", new Object[]{"started"}, ComponentPhase.START_UP),
+            new ComponentCallback("resetSerial", null, ComponentPhase.POST_CLONE)};
+
+        ComponentKey key = register(Template.class, callbacks);
+
+        _container.wrapComponentStrategy(key, DefaultComponentStrategyType.CLONING);
+
+        Template first = getInstance(key);
+        first.add("first");
+
+        Template second = getInstance(key);
+
+        // The template was constructed and started once, the copies were reset after cloning
+        assertEquals(2, first.size());
+        assertEquals(1, second.size());
+        assertEquals("started", second.get(0));
+
+        assertEquals(2, first.getSerial());
+        assertEquals(3, second.getSerial());
+        assertEquals(3, getInstanceCount(TemplateList.class));
+    }
+
+    public void testCopyMethod()
+    {
+        ComponentKey key = register(Template.class, null);
+
+        _container.wrapComponentStrategy(key, new CloningComponentStrategyType("copy"));
+
+        CloningComponentStrategy strategy = (CloningComponentStrategy) _container
+            .getComponentStrategy(key);
+
+        assertEquals("copy", strategy.getCopyMethodName());
+
+        Template first = getInstance(key);
+        first.add("first");
+
+        assertEquals(0, getInstance(key).size());
+        assertEquals(1, first.size());
+
+        // The copy constructor does not count
+        assertEquals(1, getInstanceCount(TemplateList.class));
+    }
+
+    public void testLazyLoading()
+    {
+        ComponentKey key = register(List.class, null);
+
+        _container.wrapComponentStrategy(key, DefaultComponentStrategyType.CLONING);
+
+        List list = (List) _container.getComponentInstance(key);
+        list.add("item");
+
+        // The proxy keeps its copy, another proxy gets another copy
+        assertEquals(1, list.size());
+        assertEquals(0, ((List) _container.getComponentInstance(key)).size());
+    }
+
+    public void testMissingCopyMethod()
+    {
+        ComponentKey key = register(Collection.class, null);
+
+        _container.wrapComponentStrategy(key, new CloningComponentStrategyType("duplicate"));
+
+        try
+        {
+            ((Collection) _container.getComponentInstance(key)).size();
+
+            fail("Expected the copy method to be missing");
+        }
+        catch (RuntimeException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().indexOf("duplicate") > -1);
+        }
+    }
+}
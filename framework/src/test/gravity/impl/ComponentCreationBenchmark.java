@@ -0,0 +1,122 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentCallback;
+import gravity.ComponentKey;
+import gravity.ComponentPhase;
+import gravity.MutableContainer;
+import gravity.util.ReflectUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the cost of creating instances of a component that has the default, prototype like,
+ * strategy; every instance is constructed reflectively with a constructor argument and initialized
+ * with a callback. The cost of the bare reflective construction is measured alongside. This is not
+ * a unit test, run it from the command line with an optional iteration count:
+ * 
+ * <pre>
+ *   java gravity.impl.ComponentCreationBenchmark [iterations]
+ * </pre>
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ComponentCreationBenchmark
+{
+    private static final int      ROUNDS    = 5;
+
+    private static final Object[] CTOR_ARGS = {new Integer(16)};
+
+    private MutableContainer      _container;
+    private ReflectUtils          _reflectUtils;
+    private ComponentKey          _key;
+
+    /**
+     * Prevents the JIT from eliminating the creations.
+     */
+    private int                   _sink;
+
+    public ComponentCreationBenchmark()
+    {
+        DefaultApplicationContext appContext = new DefaultApplicationContext("benchmark", null);
+        appContext.putContextItem(MutableContainer.PLUGINS_AUTOLOAD_KEY, Boolean.FALSE);
+
+        appContext.initializeFramework();
+
+        _container = appContext.getMutableContainer();
+        _reflectUtils = (ReflectUtils) _container.getConfiguration(ReflectUtils.class);
+
+        _key = _container.getComponentKey(List.class);
+
+        ComponentCallback[] callbacks = {new ComponentCallback("add", new Object[]{"item"},
+            ComponentPhase.INJECTION)};
+
+        _container.registerComponentImplementation(_key, ArrayList.class, CTOR_ARGS, callbacks);
+    }
+
+    private long timeComponentCreation(int iterations)
+    {
+        long start = System.nanoTime();
+
+        // Every proxy realizes its own instance on the first call
+        for (int i = 0; i < iterations; i++)
+            _sink += ((List) _container.getComponentInstance(_key)).size();
+
+        return System.nanoTime() - start;
+    }
+
+    private long timeReflectiveConstruction(int iterations)
+    {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++)
+            _sink += _reflectUtils.invokeConstructor(ArrayList.class, CTOR_ARGS).hashCode();
+
+        return System.nanoTime() - start;
+    }
+
+    private static String perOp(long nanos, int iterations)
+    {
+        return (nanos / iterations) + " ns/op";
+    }
+
+    public void run(int iterations)
+    {
+        // Warm up both paths
+        timeComponentCreation(iterations);
+        timeReflectiveConstruction(iterations);
+
+        for (int i = 0; i < ROUNDS; i++)
+        {
+            long compNanos = timeComponentCreation(iterations);
+            long ctorNanos = timeReflectiveConstruction(iterations);
+
+            System.out.println("Round " + (i + 1) + ": component " + perOp(compNanos, iterations)
+                + ", constructor " + perOp(ctorNanos, iterations));
+        }
+
+        System.out.println("(" + _sink + ")");
+    }
+
+    public static void main(String[] args)
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        new ComponentCreationBenchmark().run(iterations);
+    }
+}
@@ -0,0 +1,116 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentHandle;
+import gravity.ComponentKey;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the cost of retrieving component instances by key from the container with retrieving
+ * them from a {@link gravity.ComponentHandle}. This is not a unit test, run it from the command
+ * line with an optional iteration count:
+ * 
+ * <pre>
+ *   java gravity.impl.ComponentHandleBenchmark [iterations]
+ * </pre>
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ComponentHandleBenchmark
+{
+    private static final int ROUNDS = 5;
+
+    private MutableContainer _container;
+    private ComponentKey     _key;
+    private ComponentHandle  _handle;
+
+    /**
+     * Prevents the JIT from eliminating the retrievals.
+     */
+    private int              _sink;
+
+    public ComponentHandleBenchmark()
+    {
+        DefaultApplicationContext appContext = new DefaultApplicationContext("benchmark", null);
+        appContext.putContextItem(MutableContainer.PLUGINS_AUTOLOAD_KEY, Boolean.FALSE);
+
+        appContext.initializeFramework();
+
+        _container = appContext.getMutableContainer();
+
+        _key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(_key, ArrayList.class, null, null);
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.SINGLETON);
+
+        _handle = _container.getComponentHandle(_key);
+    }
+
+    private long timeKeyLookups(int iterations)
+    {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++)
+            _sink += _container.getComponentInstance(_key).hashCode();
+
+        return System.nanoTime() - start;
+    }
+
+    private long timeHandleLookups(int iterations)
+    {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++)
+            _sink += _handle.getInstance().hashCode();
+
+        return System.nanoTime() - start;
+    }
+
+    private static String perOp(long nanos, int iterations)
+    {
+        return (nanos / iterations) + " ns/op";
+    }
+
+    public void run(int iterations)
+    {
+        // Warm up both paths
+        timeKeyLookups(iterations);
+        timeHandleLookups(iterations);
+
+        for (int i = 0; i < ROUNDS; i++)
+        {
+            long keyNanos = timeKeyLookups(iterations);
+            long handleNanos = timeHandleLookups(iterations);
+
+            System.out.println("Round " + (i + 1) + ": key " + perOp(keyNanos, iterations)
+                + ", handle " + perOp(handleNanos, iterations));
+        }
+
+        System.out.println("(" + _sink + ")");
+    }
+
+    public static void main(String[] args)
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        new ComponentHandleBenchmark().run(iterations);
+    }
+}
@@ -0,0 +1,137 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentHandle;
+import gravity.ComponentKey;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ComponentHandleTest extends GravityTestCase
+{
+    private MutableContainer _container;
+
+    public void setUp()
+    {
+        _container = newContainer();
+    }
+
+    public void testGetComponentKey()
+    {
+        ComponentKey key = _container.getComponentKey(List.class);
+
+        ComponentHandle handle = _container.getComponentHandle(key);
+
+        assertSame(key, handle.getComponentKey());
+    }
+
+    public void testGetInstance()
+    {
+        ComponentKey key = _container.getComponentKey(List.class);
+
+        ComponentHandle handle = _container.getComponentHandle(key);
+
+        _container.registerComponentImplementation(key, ArrayList.class, null, null);
+
+        List list = (List) handle.getInstance();
+        list.add("item");
+
+        assertEquals(1, list.size());
+        assertNotSame(list, handle.getInstance());
+    }
+
+    public void testGetInstanceObeysStrategy()
+    {
+        ComponentKey key = _container.getComponentKey(List.class);
+
+        ComponentHandle handle = _container.getComponentHandle(key);
+
+        _container.registerComponentImplementation(key, ArrayList.class, null, null);
+        _container.wrapComponentStrategy(key, DefaultComponentStrategyType.SINGLETON);
+
+        ((List) handle.getInstance()).add("item");
+
+        assertEquals(1, ((List) handle.getInstance()).size());
+        assertEquals(1, ((List) _container.getComponentInstance(key)).size());
+    }
+
+    public void testCollectInstance()
+    {
+        ComponentKey key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(key, ArrayList.class, null, null);
+        _container.wrapComponentStrategy(key, DefaultComponentStrategyType.POOLING);
+
+        ComponentHandle handle = _container.getComponentHandle(key);
+
+        List list = (List) handle.getInstance();
+        list.add("item");
+
+        handle.collectInstance(list);
+
+        assertEquals(1, ((List) handle.getInstance()).size());
+    }
+
+    public void testRebindsToAliasedComponent()
+    {
+        ComponentKey srcKey = _container.getComponentKey(List.class, "source");
+        ComponentKey key = _container.getComponentKey(List.class, "alias");
+
+        _container.registerComponentImplementation(srcKey, LinkedList.class, null, null);
+        _container.wrapComponentStrategy(srcKey, DefaultComponentStrategyType.SINGLETON);
+        _container.registerComponentImplementation(key, ArrayList.class, null, null);
+
+        ComponentHandle handle = _container.getComponentHandle(key);
+
+        assertEquals(0, ((List) handle.getInstance()).size());
+
+        ((List) _container.getComponentInstance(srcKey)).add("item");
+
+        _container.registerComponentImplementation(key, srcKey);
+
+        assertEquals(1, ((List) handle.getInstance()).size());
+    }
+
+    public void testGetInstanceInDirectInjectionMode()
+    {
+        DefaultContainer container = newContainer(DefaultContainer.DIRECT_INJECTION_KEY,
+            Boolean.TRUE);
+
+        ComponentKey key = container.getComponentKey(List.class);
+
+        container.registerComponentImplementation(key, ArrayList.class, null, null);
+        container.wrapComponentStrategy(key, DefaultComponentStrategyType.SINGLETON);
+
+        ComponentHandle handle = container.getComponentHandle(key);
+
+        // The singleton is served through a proxy until it is realized
+        ((List) handle.getInstance()).add("item");
+
+        Object instance = container.getComponentInstance(key);
+
+        assertTrue(instance instanceof ArrayList);
+        assertSame(instance, handle.getInstance());
+        assertTrue(container.getElidedComponentKeys().contains(key));
+    }
+}
@@ -0,0 +1,145 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests how {@link AbstractComponentInvocationHandler}follows changes to the component strategy.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ComponentInvocationHandlerTest extends GravityTestCase
+{
+    public static class CountingList extends ArrayList
+    {
+        private static final long serialVersionUID = 1L;
+
+        public CountingList()
+        {
+            countInstance(CountingList.class);
+        }
+    }
+
+    private MutableContainer _container;
+    private ComponentKey     _key;
+
+    public void setUp()
+    {
+        _container = newContainer();
+
+        _key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(_key, CountingList.class, null, null);
+
+        resetInstanceCount(CountingList.class);
+    }
+
+    public void testLazyLoadingRealizesOnce()
+    {
+        List list = (List) _container.getComponentInstance(_key);
+
+        list.add("item");
+        list.add("item");
+
+        assertEquals(2, list.size());
+        assertEquals(1, getInstanceCount(CountingList.class));
+    }
+
+    public void testRacingFirstCallsShareInstance() throws Exception
+    {
+        final List list = (List) _container.getComponentInstance(_key);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(8);
+        final List failures = Collections.synchronizedList(new ArrayList());
+
+        for (int i = 0; i < 8; i++)
+        {
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+
+                        list.size();
+                    }
+                    catch (Throwable t)
+                    {
+                        failures.add(t);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        start.countDown();
+        done.await();
+
+        assertEquals(failures.toString(), 0, failures.size());
+        assertEquals(1, getInstanceCount(CountingList.class));
+    }
+
+    public void testFollowsStrategyChanges()
+    {
+        final List list = (List) _container.getComponentInstance(_key);
+
+        list.add("item");
+
+        // Lazy loading to singleton keeps the realized instance
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.SINGLETON);
+
+        assertEquals(1, list.size());
+
+        // Dispatching gets a new instance for this thread
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.THREAD_LOCAL);
+
+        list.add("item");
+        list.add("item");
+
+        assertEquals(2, list.size());
+        assertEquals(2, getInstanceCount(CountingList.class));
+    }
+
+    public void testFollowsImplementationSwitch()
+    {
+        ComponentKey srcKey = _container.getComponentKey(List.class, "source");
+
+        _container.registerComponentImplementation(srcKey, ArrayList.class, null, null);
+        _container.wrapComponentStrategy(srcKey, DefaultComponentStrategyType.THREAD_LOCAL);
+
+        List list = (List) _container.getComponentInstance(_key);
+
+        list.add("item");
+
+        // The component now shares the dispatching strategy of the source component
+        _container.registerComponentImplementation(_key, srcKey);
+
+        assertEquals(0, list.size());
+    }
+}
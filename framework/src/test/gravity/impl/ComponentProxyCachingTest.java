@@ -0,0 +1,149 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.ComponentProxy;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Verifies the proxy classes are generated once per component interface and reused for all the
+ * proxies of the component.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ComponentProxyCachingTest extends GravityTestCase
+{
+    private void assertProxiesShareClass(MutableContainer container)
+    {
+        ComponentKey key = container.getComponentKey(List.class);
+        ComponentKey facetKey = container.getComponentKey(Collection.class);
+
+        container.registerComponentImplementation(key, ArrayList.class, null, null);
+        container.registerComponentImplementation(facetKey, key);
+
+        List list = (List) container.getComponentInstance(key);
+        List list2 = (List) container.getComponentInstance(key);
+
+        assertNotSame(list, list2);
+        assertSame(list.getClass(), list2.getClass());
+
+        list.add("item");
+
+        assertEquals(1, list.size());
+        assertEquals(0, list2.size());
+
+        // The facet shares the builder, and hence the proxy factory, but not the proxy class
+        Collection coll = (Collection) container.getComponentInstance(facetKey);
+
+        assertFalse(coll instanceof List);
+        assertEquals(0, coll.size());
+    }
+
+    public void testJdkProxyClassIsReused()
+    {
+        assertProxiesShareClass(newContainer(ComponentProxy.class, JdkComponentProxy.class));
+    }
+
+    public void testCglibProxyClassIsReused()
+    {
+        assertProxiesShareClass(newContainer(ComponentProxy.class, CglibComponentProxy.class));
+    }
+
+    public void testBootstrapInterfaceFollowsContextClassLoader() throws Exception
+    {
+        MutableContainer container = newContainer(ComponentProxy.class, JdkComponentProxy.class);
+
+        ComponentKey key = container.getComponentKey(Set.class);
+
+        container.registerComponentImplementation(key, HashSet.class, null, null);
+
+        Object proxy = container.getComponentInstance(key);
+
+        Thread thread = Thread.currentThread();
+        ClassLoader loader = thread.getContextClassLoader();
+
+        try
+        {
+            ClassLoader newLoader = new URLClassLoader(new URL[0], loader);
+
+            thread.setContextClassLoader(newLoader);
+
+            Object proxy2 = container.getComponentInstance(key);
+
+            assertSame(newLoader, proxy2.getClass().getClassLoader());
+            assertNotSame(proxy.getClass(), proxy2.getClass());
+        }
+        finally
+        {
+            thread.setContextClassLoader(loader);
+        }
+
+        assertSame(proxy.getClass(), container.getComponentInstance(key).getClass());
+    }
+
+    public void testCacheKeepsEachClassLoader()
+    {
+        ComponentProxyCache cache = new ComponentProxyCache();
+
+        ClassLoader loader = getClass().getClassLoader();
+        ClassLoader newLoader = new URLClassLoader(new URL[0], loader);
+
+        Object factory = new Object();
+        Object newFactory = new Object();
+
+        assertNull(cache.get(List.class, loader));
+
+        cache.put(List.class, loader, factory);
+        cache.put(List.class, newLoader, newFactory);
+
+        // Alternating class loaders do not displace each other
+        assertSame(factory, cache.get(List.class, loader));
+        assertSame(newFactory, cache.get(List.class, newLoader));
+        assertNull(cache.get(Set.class, loader));
+
+        Object replacement = new Object();
+
+        cache.put(List.class, loader, replacement);
+
+        assertSame(replacement, cache.get(List.class, loader));
+        assertSame(newFactory, cache.get(List.class, newLoader));
+    }
+
+    public void testProxyClassIsSharedByContainers()
+    {
+        MutableContainer container = newContainer(ComponentProxy.class, CglibComponentProxy.class);
+        MutableContainer container2 = newContainer(ComponentProxy.class, CglibComponentProxy.class);
+
+        ComponentKey key = container.getComponentKey(List.class);
+        ComponentKey key2 = container2.getComponentKey(List.class);
+
+        container.registerComponentImplementation(key, ArrayList.class, null, null);
+        container2.registerComponentImplementation(key2, ArrayList.class, null, null);
+
+        assertSame(container.getComponentInstance(key).getClass(),
+            container2.getComponentInstance(key2).getClass());
+    }
+}
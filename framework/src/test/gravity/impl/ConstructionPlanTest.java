@@ -0,0 +1,189 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentCallback;
+import gravity.ComponentKey;
+import gravity.ComponentPhase;
+import gravity.DynamicWeaver;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Tests the construction plans compiled by {@link DefaultComponentInstanceBuilder}.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ConstructionPlanTest extends GravityTestCase
+{
+    public static class CountingWeaver implements DynamicWeaver
+    {
+        public CountingWeaver()
+        {
+            countInstance(CountingWeaver.class);
+        }
+
+        public Object weave(Object obj)
+        {
+            return obj;
+        }
+    }
+
+    private MutableContainer _container;
+    private ComponentKey     _depKey;
+    private ComponentKey     _key;
+
+    public void setUp()
+    {
+        _container = newContainer(DynamicWeaver.class, CountingWeaver.class);
+
+        _depKey = _container.getComponentKey(List.class, "dependency");
+        _key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(_depKey, ArrayList.class, null, null);
+
+        // Compile the plan of the dependency up front
+        newInstance(_depKey);
+
+        resetInstanceCount(CountingWeaver.class);
+    }
+
+    private List newInstance(ComponentKey key)
+    {
+        List list = (List) _container.getComponentInstance(key);
+
+        // Realize the instance
+        list.size();
+
+        return list;
+    }
+
+    private ComponentCallback newCallback(String name, Object arg, ComponentPhase phase)
+    {
+        return new ComponentCallback(name, new Object[]{arg}, phase);
+    }
+
+    public void testCallbacksRunByPhase()
+    {
+        ComponentCallback[] callbacks = {newCallback("add", "startUp", ComponentPhase.START_UP),
+            newCallback("add", "injection", ComponentPhase.INJECTION),
+            newCallback("add", "shutdown", ComponentPhase.SHUTDOWN)};
+
+        _container.registerComponentImplementation(_key, ArrayList.class, null, callbacks);
+
+        for (int i = 0; i < 2; i++)
+            assertEquals(Arrays.asList(new Object[]{"injection", "startUp"}), newInstance(_key));
+    }
+
+    public void testPlanIsReused()
+    {
+        Object[] ctorArgs = {_depKey};
+        ComponentCallback[] callbacks = {newCallback("add", _depKey, ComponentPhase.INJECTION)};
+
+        _container.registerComponentImplementation(_key, LinkedList.class, ctorArgs, callbacks);
+
+        List first = newInstance(_key);
+        List second = newInstance(_key);
+
+        assertEquals(1, getInstanceCount(CountingWeaver.class));
+
+        // The dependency is realized once per plan and shared by all instances
+        assertSame(first.get(0), second.get(0));
+
+        // The registered arguments are left as registered
+        assertSame(_depKey, ctorArgs[0]);
+        assertSame(_depKey, callbacks[0].getArguments()[0]);
+    }
+
+    public void testRegistrationDiscardsPlan()
+    {
+        _container.registerComponentImplementation(_key, ArrayList.class, null, null);
+
+        assertEquals(0, newInstance(_key).size());
+
+        _container.registerComponentCallbacks(_key, new ComponentCallback[]{newCallback("add",
+            "item", ComponentPhase.INJECTION)});
+
+        assertEquals(Arrays.asList(new Object[]{"item"}), newInstance(_key));
+        assertEquals(2, getInstanceCount(CountingWeaver.class));
+
+        _container.registerComponentImplementation(_key, LinkedList.class, new Object[]{_depKey},
+            null);
+
+        assertEquals(0, newInstance(_key).size());
+        assertEquals(3, getInstanceCount(CountingWeaver.class));
+    }
+
+    public void testShutdownDoesNotCompilePlan()
+    {
+        DefaultApplicationContext appContext = new DefaultApplicationContext("test", null);
+        appContext.putContextItem(MutableContainer.PLUGINS_AUTOLOAD_KEY, Boolean.FALSE);
+        appContext.putContextItem(DynamicWeaver.class, CountingWeaver.class);
+
+        DefaultFrameworkContext context = new DefaultFrameworkContext(appContext);
+        appContext.setMutableContainer(new DefaultContainer(context));
+        context.initialize();
+
+        DefaultComponentInstanceBuilder builder = new DefaultComponentInstanceBuilder();
+        builder.initialize(context);
+
+        // The constructor argument is never registered, so compiling a plan would fail
+        ComponentKey unregisteredKey = _container.getComponentKey(List.class, "unregistered");
+
+        builder.registerImplementation(LinkedList.class, new Object[]{unregisteredKey},
+            new ComponentCallback[]{newCallback("add", "shutdown", ComponentPhase.SHUTDOWN),
+                newCallback("add", "postClone", ComponentPhase.POST_CLONE)});
+
+        // An instance that was not built by the builder
+        List list = new ArrayList();
+
+        builder.postCloneInstance(null, list);
+        builder.shutdownInstance(null, list);
+
+        assertEquals(Arrays.asList(new Object[]{"postClone", "shutdown"}), list);
+        assertEquals(0, getInstanceCount(CountingWeaver.class));
+    }
+
+    public void testFactoryDelegate()
+    {
+        Object[] facArgs = {_depKey};
+
+        _container.registerComponentFactory(_key, new ListFactory(), "newList", facArgs, null);
+
+        List list = newInstance(_key);
+
+        assertEquals(1, list.size());
+        assertTrue(list.get(0) instanceof List);
+        assertSame(_depKey, facArgs[0]);
+    }
+
+    public static class ListFactory
+    {
+        public List newList(List dependency)
+        {
+            List list = new LinkedList();
+
+            list.add(dependency);
+
+            return list;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress test for the concurrent registry mode of {@link DefaultContainer}.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class DefaultContainerConcurrencyTest extends GravityTestCase
+{
+    private static final int COMPONENTS = 500;
+    private static final int READERS    = 8;
+
+    private MutableContainer _container;
+    private ComponentKey[]   _keys;
+
+    /**
+     * The number of components registered so far by the writer; readers only look up components
+     * below this mark and so expect them to be fully registered.
+     */
+    private AtomicInteger    _published = new AtomicInteger();
+
+    private List             _failures  = Collections.synchronizedList(new ArrayList());
+
+    public void setUp()
+    {
+        _container = newContainer(DefaultContainer.CONCURRENT_REGISTRY_KEY, "true");
+
+        _keys = new ComponentKey[COMPONENTS];
+
+        for (int i = 0; i < COMPONENTS; i++)
+            _keys[i] = _container.getComponentKey(List.class, "list" + i);
+    }
+
+    public void testConcurrentRegistryMode()
+    {
+        assertTrue(((DefaultContainer) _container).isConcurrentRegistry());
+    }
+
+    private void register(int i)
+    {
+        _container.registerComponentImplementation(_keys[i], ArrayList.class, null, null);
+
+        if (i % 2 == 0)
+            _container.wrapComponentStrategy(_keys[i], DefaultComponentStrategyType.SINGLETON);
+
+        _container.registerConfigurationItem("items", new Integer(i));
+    }
+
+    private void read(int i)
+    {
+        List list = (List) _container.getComponentInstance(_keys[i]);
+
+        // Realizes the component; fails if the registration is not visible to this thread
+        list.size();
+
+        int count = 0;
+
+        for (Iterator itr = _container.getConfigurationList("items").iterator(); itr.hasNext();)
+        {
+            itr.next();
+            count++;
+        }
+
+        if (count <= i)
+            throw new IllegalStateException("Missing configuration items: " + count + " <= " + i);
+    }
+
+    private Thread newThread(final CountDownLatch start, final CountDownLatch done,
+        final boolean writer, final int seed)
+    {
+        return new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    start.await();
+
+                    if (writer)
+                    {
+                        for (int i = 0; i < COMPONENTS; i++)
+                        {
+                            register(i);
+                            _published.incrementAndGet();
+                        }
+                    }
+                    else
+                    {
+                        int n = seed;
+
+                        while (_published.get() < COMPONENTS)
+                        {
+                            int published = _published.get();
+
+                            if (published > 0)
+                                read(n++ % published);
+                        }
+                    }
+                }
+                catch (Throwable t)
+                {
+                    _failures.add(t);
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            }
+        };
+    }
+
+    public void testRuntimeRegistrationsAreVisibleToReaders() throws Exception
+    {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(READERS + 1);
+
+        newThread(start, done, true, 0).start();
+
+        for (int i = 0; i < READERS; i++)
+            newThread(start, done, false, i * 31).start();
+
+        start.countDown();
+        done.await();
+
+        assertEquals(_failures.toString(), 0, _failures.size());
+
+        assertEquals(COMPONENTS, _container.getConfigurationList("items").size());
+
+        for (int i = 0; i < COMPONENTS; i++)
+            assertEquals(0, ((List) _container.getComponentInstance(_keys[i])).size());
+    }
+
+    public void testConcurrentKeyLookupsShareKey() throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(READERS);
+        final List keys = Collections.synchronizedList(new ArrayList());
+
+        for (int i = 0; i < READERS; i++)
+        {
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+
+                        keys.add(_container.getComponentKey(Runnable.class, "interned"));
+                    }
+                    catch (Throwable t)
+                    {
+                        _failures.add(t);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        start.countDown();
+        done.await();
+
+        assertEquals(_failures.toString(), 0, _failures.size());
+
+        ComponentKey key = _container.getComponentKey(Runnable.class, "interned");
+
+        for (Iterator itr = keys.iterator(); itr.hasNext();)
+            assertSame(key, itr.next());
+
+        assertSame(_container.getComponentKey(Runnable.class),
+            _container.getComponentKey(Runnable.class, null));
+    }
+
+    public void testConcurrentLookupsShareComponent() throws Exception
+    {
+        final ComponentKey key = _container.getComponentKey(List.class, "shared");
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(READERS);
+        final List instances = Collections.synchronizedList(new ArrayList());
+
+        _container.registerComponentImplementation(key, Vector.class, null, null);
+        _container.wrapComponentStrategy(key, DefaultComponentStrategyType.SINGLETON);
+
+        for (int i = 0; i < READERS; i++)
+        {
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+
+                        List list = (List) _container.getComponentInstance(key);
+                        list.add(this);
+
+                        instances.add(list);
+                    }
+                    catch (Throwable t)
+                    {
+                        _failures.add(t);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        start.countDown();
+        done.await();
+
+        assertEquals(_failures.toString(), 0, _failures.size());
+        assertEquals(READERS, instances.size());
+        assertEquals(READERS, ((List) _container.getComponentInstance(key)).size());
+    }
+}
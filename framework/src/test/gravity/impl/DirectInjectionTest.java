@@ -0,0 +1,120 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Tests the direct injection mode of {@link DefaultContainer}.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class DirectInjectionTest extends GravityTestCase
+{
+    private DefaultContainer newContainer(boolean directInjection)
+    {
+        return newContainer(DefaultContainer.DIRECT_INJECTION_KEY, Boolean
+            .valueOf(directInjection));
+    }
+
+    private ComponentKey registerSingleton(MutableContainer container)
+    {
+        ComponentKey key = container.getComponentKey(List.class);
+
+        container.registerComponentImplementation(key, ArrayList.class, null, null);
+        container.wrapComponentStrategy(key, DefaultComponentStrategyType.SINGLETON);
+
+        return key;
+    }
+
+    public void testDisabledByDefault()
+    {
+        DefaultContainer container = newContainer(false);
+
+        ComponentKey key = registerSingleton(container);
+
+        ((List) container.getComponentInstance(key)).size();
+
+        assertFalse(container.isDirectInjection());
+        assertTrue(Proxy.isProxyClass(container.getComponentInstance(key).getClass()));
+        assertTrue(container.getElidedComponentKeys().isEmpty());
+    }
+
+    public void testRealizedSingletonIsServedDirectly()
+    {
+        DefaultContainer container = newContainer(true);
+
+        ComponentKey key = registerSingleton(container);
+
+        List proxy = (List) container.getComponentInstance(key);
+
+        // Not realized yet
+        assertTrue(Proxy.isProxyClass(proxy.getClass()));
+        assertTrue(container.getElidedComponentKeys().isEmpty());
+
+        proxy.add("item");
+
+        List list = (List) container.getComponentInstance(key);
+
+        assertSame(ArrayList.class, list.getClass());
+        assertEquals(1, list.size());
+        assertEquals(Collections.singleton(key), container.getElidedComponentKeys());
+    }
+
+    public void testDependentsReceiveRealizedSingleton()
+    {
+        DefaultContainer container = newContainer(true);
+
+        ComponentKey key = registerSingleton(container);
+
+        ((List) container.getComponentInstance(key)).add("item");
+
+        ComponentKey depKey = container.getComponentKey(List.class, "dependent");
+
+        container.registerComponentImplementation(depKey, LinkedList.class, new Object[]{key},
+            null);
+
+        List dependent = (List) container.getComponentInstance(depKey);
+
+        // LinkedList(Collection) copies the dependency, realizing the dependent
+        assertEquals(1, dependent.size());
+        assertTrue(container.getElidedComponentKeys().contains(key));
+        assertFalse(container.getElidedComponentKeys().contains(depKey));
+    }
+
+    public void testDispatchingSingletonIsNotElided()
+    {
+        DefaultContainer container = newContainer(true);
+
+        ComponentKey key = registerSingleton(container);
+
+        ((List) container.getComponentInstance(key)).size();
+
+        container.wrapComponentStrategy(key, DefaultComponentStrategyType.THREAD_LOCAL);
+
+        assertTrue(Proxy.isProxyClass(container.getComponentInstance(key).getClass()));
+        assertTrue(container.getElidedComponentKeys().isEmpty());
+    }
+}
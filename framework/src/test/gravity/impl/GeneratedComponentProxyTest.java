@@ -0,0 +1,156 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.ComponentProxy;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+import gravity.mocks.MockService2;
+import gravity.mocks.MockService2Impl;
+import gravity.mocks.MockServiceImpl;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class GeneratedComponentProxyTest extends GravityTestCase
+{
+    private MutableContainer _container;
+
+    public void setUp()
+    {
+        _container = newContainer(ComponentProxy.class, GeneratedComponentProxy.class);
+    }
+
+    private List newList()
+    {
+        ComponentKey key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(key, ArrayList.class, null, null);
+
+        return (List) _container.getComponentInstance(key);
+    }
+
+    public void testProxyClass()
+    {
+        List list = newList();
+        List list2 = newList();
+
+        assertTrue(list instanceof AbstractComponentInvocationHandler);
+        assertSame(list.getClass(), list2.getClass());
+    }
+
+    public void testInterfaceMethods()
+    {
+        List list = newList();
+
+        list.add("item");
+        list.add(0, "first");
+
+        assertEquals(2, list.size());
+        assertEquals("first", list.get(0));
+        assertEquals(1, list.indexOf("item"));
+    }
+
+    public void testObjectMethods()
+    {
+        List list = newList();
+
+        list.add("item");
+
+        List copy = new ArrayList(list);
+
+        assertEquals("[item]", list.toString());
+        assertEquals(copy.hashCode(), list.hashCode());
+        assertTrue(list.equals(copy));
+    }
+
+    public void testExceptionsPropagateUnaltered()
+    {
+        try
+        {
+            newList().get(1);
+
+            fail("Expected IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            // Expected
+        }
+    }
+
+    public void testApplicationInterface()
+    {
+        ComponentKey key = _container.getComponentKey(MockService2.class);
+
+        Object[] ctorArgs = {new MockServiceImpl(null, null, null), new ArrayList(), new HashMap()};
+
+        _container.registerComponentImplementation(key, MockService2Impl.class, ctorArgs, null);
+
+        MockService2 service = (MockService2) _container.getComponentInstance(key);
+
+        assertSame(MockService2.class.getClassLoader(), service.getClass().getClassLoader());
+
+        service.service();
+    }
+
+    public void testObeysStrategyChanges()
+    {
+        ComponentKey key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(key, ArrayList.class, null, null);
+
+        List list = (List) _container.getComponentInstance(key);
+        list.add("item");
+
+        _container.wrapComponentStrategy(key, DefaultComponentStrategyType.THREAD_LOCAL);
+
+        assertEquals(0, list.size());
+    }
+
+    public void testBootstrapInterfaceFollowsContextClassLoader()
+    {
+        ComponentKey key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(key, ArrayList.class, null, null);
+
+        Thread thread = Thread.currentThread();
+        ClassLoader loader = thread.getContextClassLoader();
+
+        try
+        {
+            ClassLoader newLoader = new URLClassLoader(new URL[0], loader);
+
+            thread.setContextClassLoader(newLoader);
+
+            List list = (List) _container.getComponentInstance(key);
+
+            assertSame(newLoader, list.getClass().getClassLoader());
+            assertEquals(0, list.size());
+        }
+        finally
+        {
+            thread.setContextClassLoader(loader);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.ComponentLease;
+import gravity.ComponentProxy;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+import gravity.plugins.PoolingComponentStrategyType;
+
+import gravity.util.Pool;
+import gravity.util.PoolConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests the collection of pooled component instances through their proxies.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class PooledComponentTest extends GravityTestCase
+{
+    private void assertCollectsThroughProxy(Class proxyClass)
+    {
+        MutableContainer container = newContainer(ComponentProxy.class, proxyClass);
+
+        ComponentKey key = container.getComponentKey(List.class);
+
+        container.registerComponentImplementation(key, ArrayList.class, null, null);
+        container.wrapComponentStrategy(key, DefaultComponentStrategyType.POOLING);
+
+        List first = (List) container.getComponentInstance(key);
+        first.add("item");
+
+        // Collecting an unrealized proxy is a no-op
+        container.collectComponentInstance(key, container.getComponentInstance(key));
+
+        container.collectComponentInstance(key, first);
+
+        // The pooled instance is loaned to the next proxy
+        List second = (List) container.getComponentInstance(key);
+
+        assertEquals(1, second.size());
+
+        // The collected proxy is detached and borrows afresh
+        assertEquals(0, first.size());
+    }
+
+    public void testLimitsActiveInstances()
+    {
+        DefaultContainer container = newContainer(new Object[]{
+            PoolingComponentStrategy.MAX_ACTIVE_KEY, new Integer(1),
+            PoolingComponentStrategy.MAX_WAIT_KEY, new Long(20)});
+
+        ComponentKey key = container.getComponentKey(List.class);
+
+        container.registerComponentImplementation(key, ArrayList.class, null, null);
+        container.wrapComponentStrategy(key, DefaultComponentStrategyType.POOLING);
+
+        List first = (List) container.getComponentInstance(key);
+        first.size();
+
+        Pool pool = container.getComponentPool(key);
+
+        assertEquals(1, pool.getMaxActive());
+        assertEquals(1, pool.getActiveCount());
+
+        List second = (List) container.getComponentInstance(key);
+
+        try
+        {
+            second.size();
+
+            fail("Expected the loan to time out");
+        }
+        catch (RuntimeException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().indexOf(
+                "Unable to loan a pooled instance for component") > -1);
+        }
+
+        assertEquals(1, pool.getTimeoutCount());
+
+        container.collectComponentInstance(key, first);
+
+        assertEquals(0, second.size());
+        assertEquals(1, pool.getActiveCount());
+
+        assertNull(container.getComponentPool(container.getComponentKey(Map.class)));
+    }
+
+    public static class ValidatedList extends ArrayList
+    {
+        public ValidatedList()
+        {
+            countInstance(ValidatedList.class);
+        }
+
+        public boolean isValid()
+        {
+            return !contains("invalid");
+        }
+    }
+
+    private DefaultContainer newPooledContainer(ComponentKey[] key, PoolConfiguration config)
+    {
+        DefaultContainer container = newContainer();
+
+        key[0] = container.getComponentKey(List.class);
+
+        container.registerComponentImplementation(key[0], ValidatedList.class, null, null);
+        container.wrapComponentStrategy(key[0], new PoolingComponentStrategyType(config));
+
+        resetInstanceCount(ValidatedList.class);
+
+        return container;
+    }
+
+    public void testPrefillAndValidation()
+    {
+        PoolConfiguration config = new PoolConfiguration();
+        config.setPrefillSize(2);
+        config.setValidationMethod("isValid");
+
+        ComponentKey[] key = new ComponentKey[1];
+
+        DefaultContainer container = newPooledContainer(key, config);
+
+        container.prefillComponentPools();
+
+        Pool pool = container.getComponentPool(key[0]);
+
+        assertEquals(2, getInstanceCount(ValidatedList.class));
+        assertEquals(2, pool.getIdleCount());
+
+        List first = (List) container.getComponentInstance(key[0]);
+        first.add("invalid");
+
+        List second = (List) container.getComponentInstance(key[0]);
+        second.add("valid");
+
+        // The requests were served from the pool
+        assertEquals(2, getInstanceCount(ValidatedList.class));
+
+        container.collectComponentInstance(key[0], first);
+        container.collectComponentInstance(key[0], second);
+
+        // The invalid instance is discarded on loan and the valid one is loaned instead
+        for (int i = 0; i < 2; i++)
+        {
+            List list = (List) container.getComponentInstance(key[0]);
+
+            assertTrue(list.size() == 0 || list.contains("valid"));
+        }
+
+        assertEquals(3, getInstanceCount(ValidatedList.class));
+        assertEquals(2, pool.getActiveCount());
+    }
+
+    public void testMaintenanceEvictsAndKeepsMinIdle() throws Exception
+    {
+        PoolConfiguration config = new PoolConfiguration();
+        config.setPrefillSize(3);
+        config.setMinIdle(1);
+        config.setIdleTimeout(10);
+        config.setMaintenanceInterval(10);
+
+        ComponentKey[] key = new ComponentKey[1];
+
+        DefaultContainer container = newPooledContainer(key, config);
+
+        container.prefillComponentPools();
+
+        Pool pool = container.getComponentPool(key[0]);
+
+        assertEquals(3, pool.getIdleCount());
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (pool.getEvictionCount() < 2 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(1, pool.getIdleCount());
+
+        // Loaning the last idle instance leaves the maintenance to create a replacement
+        List list = (List) container.getComponentInstance(key[0]);
+        list.size();
+
+        while (pool.getIdleCount() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(4, getInstanceCount(ValidatedList.class));
+    }
+
+    public static class BrokenList extends ArrayList
+    {
+        public BrokenList()
+        {
+            throw new IllegalStateException("Broken list");
+        }
+    }
+
+    public void testMaintenanceSurvivesFailures() throws Exception
+    {
+        PoolConfiguration config = new PoolConfiguration();
+        config.setMinIdle(1);
+        config.setMaintenanceInterval(10);
+
+        ComponentKey[] key = new ComponentKey[1];
+
+        DefaultContainer container = newPooledContainer(key, config);
+
+        container.prefillComponentPools();
+
+        Pool pool = container.getComponentPool(key[0]);
+
+        ComponentKey brokenKey = container.getComponentKey(Map.class);
+
+        container.registerComponentImplementation(brokenKey, BrokenList.class, null, null);
+        container.wrapComponentStrategy(brokenKey, new PoolingComponentStrategyType(config));
+
+        // The broken pool is maintained too, its maintenance fails on every run
+        try
+        {
+            container.prefillComponentPools();
+
+            fail("Expected the broken list to fail");
+        }
+        catch (RuntimeException e)
+        {
+        }
+
+        PoolingComponentStrategy brokenStrategy = (PoolingComponentStrategy) container
+            .getComponentStrategy(brokenKey);
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (brokenStrategy.getMaintenanceFailureCount() < 2
+            && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertTrue(brokenStrategy.getMaintenanceFailureCount() >= 2);
+        assertSuperString(brokenStrategy.getLastMaintenanceFailure(),
+            "Unable to invoke constructor");
+
+        List list = (List) container.getComponentInstance(key[0]);
+        list.size();
+
+        while (pool.getIdleCount() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        // The maintenance thread is still alive
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, ((PoolingComponentStrategy) container.getComponentStrategy(key[0]))
+            .getMaintenanceFailureCount());
+    }
+
+    public void testPerComponentSize()
+    {
+        PoolConfiguration config = new PoolConfiguration();
+        config.setMaxSize(3);
+
+        ComponentKey[] key = new ComponentKey[1];
+
+        DefaultContainer container = newPooledContainer(key, config);
+
+        ComponentKey mapKey = container.getComponentKey(Map.class);
+
+        container.registerComponentImplementation(mapKey, HashMap.class, null, null);
+        container.wrapComponentStrategy(mapKey, DefaultComponentStrategyType.POOLING);
+
+        assertEquals(3, container.getComponentPool(key[0]).getCapacity());
+        assertEquals(10, container.getComponentPool(mapKey).getCapacity());
+
+        ComponentKey setKey = container.getComponentKey(Set.class);
+
+        config = new PoolConfiguration();
+        config.setAdaptive(true);
+        config.setMinSize(2);
+
+        container.registerComponentImplementation(setKey, HashSet.class, null, null);
+        container.wrapComponentStrategy(setKey, new PoolingComponentStrategyType(config));
+
+        // An adaptive pool starts at its minimum size
+        assertEquals(2, container.getComponentPool(setKey).getCapacity());
+    }
+
+    public void testLease()
+    {
+        ComponentKey[] key = new ComponentKey[1];
+
+        DefaultContainer container = newPooledContainer(key, new PoolConfiguration());
+
+        Pool pool = container.getComponentPool(key[0]);
+
+        ComponentLease lease = container.leaseComponentInstance(key[0]);
+
+        List list = (List) lease.getInstance();
+
+        assertTrue(list instanceof ValidatedList);
+        assertEquals(1, pool.getActiveCount());
+
+        lease.close();
+        lease.close();
+
+        assertTrue(lease.isClosed());
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+
+        // The leased instance is loaned afresh
+        ComponentLease secondLease = container.leaseComponentInstance(key[0]);
+
+        assertSame(list, secondLease.getInstance());
+
+        secondLease.close();
+
+        // Components that are not pooled lease their concrete instances too
+        ComponentKey mapKey = container.getComponentKey(Map.class);
+
+        container.registerComponentImplementation(mapKey, HashMap.class, null, null);
+
+        ComponentLease mapLease = container.leaseComponentInstance(mapKey);
+
+        assertTrue(mapLease.getInstance() instanceof HashMap);
+
+        mapLease.close();
+
+        assertTrue(mapLease.isClosed());
+    }
+
+    public void testLeaseThroughOuterStrategy()
+    {
+        ComponentKey[] key = new ComponentKey[1];
+
+        DefaultContainer container = newPooledContainer(key, new PoolConfiguration());
+
+        container.wrapComponentStrategy(key[0], DefaultComponentStrategyType.THREAD_LOCAL);
+
+        Pool pool = container.getComponentPool(key[0]);
+
+        ComponentLease first = container.leaseComponentInstance(key[0]);
+        ComponentLease second = container.leaseComponentInstance(key[0]);
+
+        // The thread local strategy serves its instance, the pool is not leased from directly
+        assertSame(first.getInstance(), second.getInstance());
+        assertEquals(1, pool.getActiveCount());
+
+        first.close();
+        second.close();
+    }
+
+    public void testJdkProxy()
+    {
+        assertCollectsThroughProxy(JdkComponentProxy.class);
+    }
+
+    public void testCglibProxy()
+    {
+        assertCollectsThroughProxy(CglibComponentProxy.class);
+    }
+
+    public void testGeneratedProxy()
+    {
+        assertCollectsThroughProxy(GeneratedComponentProxy.class);
+    }
+}
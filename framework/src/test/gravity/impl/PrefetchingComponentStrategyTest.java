@@ -0,0 +1,215 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentCallback;
+import gravity.ComponentKey;
+import gravity.ComponentPhase;
+import gravity.GravityTestCase;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class PrefetchingComponentStrategyTest extends GravityTestCase
+{
+    /**
+     * This records the thread it was built on.
+     */
+    public static class ExpensiveList extends ArrayList
+    {
+        public ExpensiveList() throws InterruptedException
+        {
+            Thread.sleep(5);
+
+            add(Thread.currentThread().getName());
+        }
+    }
+
+    public static class ClosableList extends ExpensiveList
+    {
+        public ClosableList() throws InterruptedException
+        {
+        }
+
+        public void close()
+        {
+            countInstance(ClosableList.class);
+        }
+    }
+
+    public static class UnavailableList extends ArrayList
+    {
+        public UnavailableList()
+        {
+            throw new IllegalStateException("Source unavailable");
+        }
+    }
+
+    private DefaultContainer _container;
+    private ComponentKey     _key;
+
+    protected void setUp()
+    {
+        _container = newContainer(PrefetchingComponentStrategy.MAX_DEPTH_KEY, new Integer(4));
+
+        _key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(_key, ExpensiveList.class, null, null);
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.PREFETCHING);
+    }
+
+    private PrefetchingComponentStrategy getStrategy()
+    {
+        return (PrefetchingComponentStrategy) _container.getComponentStrategy(_key);
+    }
+
+    private String builtOn()
+    {
+        return (String) ((List) _container.getComponentInstance(_key)).get(0);
+    }
+
+    private void awaitBuffered(int count) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (getStrategy().getBufferedCount() < count && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+    }
+
+    public void testServesPrefetchedInstances() throws Exception
+    {
+        // The buffer is empty, the first request builds its own instance
+        assertEquals(Thread.currentThread().getName(), builtOn());
+
+        // The miss doubled the depth
+        assertEquals(2, getStrategy().getDepth());
+
+        awaitBuffered(2);
+
+        List first = (List) _container.getComponentInstance(_key);
+        List second = (List) _container.getComponentInstance(_key);
+
+        assertEquals("gravity-prefetch", first.get(0));
+        assertEquals("gravity-prefetch", second.get(0));
+        assertNotSame(first, second);
+
+        assertEquals(1, getStrategy().getMissCount());
+        assertEquals(2, getStrategy().getHitCount());
+    }
+
+    public void testDepthAdaptsToDemand() throws Exception
+    {
+        // Back to back requests drain the buffer and grow it up to its maximum depth
+        for (int i = 0; i < 20; i++)
+            builtOn();
+
+        assertEquals(4, getStrategy().getDepth());
+
+        // Requests that never find the buffer empty shrink it
+        for (int i = 0; i < 50; i++)
+        {
+            awaitBuffered(getStrategy().getDepth());
+
+            builtOn();
+        }
+
+        assertEquals(1, getStrategy().getDepth());
+        assertTrue(getStrategy().getBufferedCount() <= 4);
+    }
+
+    public void testKeepsLastPrefetchFailure() throws Exception
+    {
+        ComponentKey key = _container.getComponentKey(Collection.class);
+
+        _container.registerComponentImplementation(key, UnavailableList.class, null, null);
+        _container.wrapComponentStrategy(key, DefaultComponentStrategyType.PREFETCHING);
+
+        PrefetchingComponentStrategy strategy = (PrefetchingComponentStrategy) _container
+            .getComponentStrategy(key);
+
+        assertNull(strategy.getLastPrefetchFailure());
+
+        try
+        {
+            ((Collection) _container.getComponentInstance(key)).size();
+
+            unreachable();
+        }
+        catch (RuntimeException e)
+        {
+            assertSuperString(e, "Unable to invoke constructor");
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (strategy.getPrefetchFailureCount() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+
+        assertEquals(1, strategy.getPrefetchFailureCount());
+        assertSuperString(strategy.getLastPrefetchFailure(), "Unable to invoke constructor");
+    }
+
+    private void registerClosableList(ComponentKey key)
+    {
+        resetInstanceCount(ClosableList.class);
+
+        _container.registerComponentImplementation(key, ClosableList.class, null,
+            new ComponentCallback[]{new ComponentCallback("close", null, ComponentPhase.SHUTDOWN)});
+    }
+
+    public void testDrainShutsBufferedInstancesDown() throws Exception
+    {
+        registerClosableList(_key);
+
+        builtOn();
+
+        awaitBuffered(2);
+
+        _container.drainPrefetchBuffer(_key);
+
+        assertEquals(0, getStrategy().getBufferedCount());
+        assertEquals(2, getInstanceCount(ClosableList.class));
+
+        // The buffer is refilled on the next request
+        builtOn();
+
+        awaitBuffered(1);
+    }
+
+    public void testDroppedStrategyIsDrained() throws Exception
+    {
+        registerClosableList(_key);
+
+        PrefetchingComponentStrategy strategy = getStrategy();
+
+        builtOn();
+
+        awaitBuffered(2);
+
+        ComponentKey srcKey = _container.getComponentKey(List.class, "source");
+
+        _container.registerComponentImplementation(srcKey, ArrayList.class, null, null);
+        _container.registerComponentImplementation(_key, srcKey);
+
+        assertEquals(0, strategy.getBufferedCount());
+        assertEquals(2, getInstanceCount(ClosableList.class));
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.ComponentProxy;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the cost of calls through the component proxies. This is not a unit test, run it from
+ * the command line with an optional iteration count:
+ * 
+ * <pre>
+ *   java gravity.impl.ProxyDispatchBenchmark [iterations]
+ * </pre>
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ProxyDispatchBenchmark
+{
+    private static final int ROUNDS = 5;
+
+    /**
+     * Prevents the JIT from eliminating the calls.
+     */
+    private int              _sink;
+
+    private static List newList(Class proxyClass)
+    {
+        DefaultApplicationContext appContext = new DefaultApplicationContext("benchmark", null);
+        appContext.putContextItem(MutableContainer.PLUGINS_AUTOLOAD_KEY, Boolean.FALSE);
+        appContext.putContextItem(ComponentProxy.class, proxyClass);
+
+        appContext.initializeFramework();
+
+        MutableContainer container = appContext.getMutableContainer();
+
+        ComponentKey key = container.getComponentKey(List.class);
+
+        container.registerComponentImplementation(key, ArrayList.class, null, null);
+        container.wrapComponentStrategy(key, DefaultComponentStrategyType.SINGLETON);
+
+        List list = (List) container.getComponentInstance(key);
+        list.add("item");
+
+        return list;
+    }
+
+    private long time(List list, int iterations)
+    {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++)
+            _sink += list.size() + list.get(0).hashCode();
+
+        return System.nanoTime() - start;
+    }
+
+    public void run(int iterations)
+    {
+        String[] names = {"direct", "jdk", "cglib", "generated"};
+
+        List[] lists = {new ArrayList(newList(JdkComponentProxy.class)),
+            newList(JdkComponentProxy.class), newList(CglibComponentProxy.class),
+            newList(GeneratedComponentProxy.class)};
+
+        // Warm up all the paths
+        for (int i = 0; i < lists.length; i++)
+            time(lists[i], iterations);
+
+        for (int r = 0; r < ROUNDS; r++)
+        {
+            StringBuffer buf = new StringBuffer("Round " + (r + 1) + ":");
+
+            for (int i = 0; i < lists.length; i++)
+            {
+                // Two calls per iteration
+                long nanos = time(lists[i], iterations) / 2;
+
+                buf.append(" ").append(names[i]).append(" ").append(nanos / iterations);
+                buf.append(".").append(nanos * 10 / iterations % 10).append(" ns/call,");
+            }
+
+            System.out.println(buf.substring(0, buf.length() - 1));
+        }
+
+        System.out.println("(" + _sink + ")");
+    }
+
+    public static void main(String[] args)
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        new ProxyDispatchBenchmark().run(iterations);
+    }
+}
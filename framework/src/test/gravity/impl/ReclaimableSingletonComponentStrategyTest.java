@@ -0,0 +1,126 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ReclaimableSingletonComponentStrategyTest extends GravityTestCase
+{
+    /**
+     * This takes a while to build, so concurrent callers race for it.
+     */
+    public static class SlowList extends ArrayList
+    {
+        public SlowList() throws InterruptedException
+        {
+            countInstance(SlowList.class);
+
+            Thread.sleep(50);
+        }
+    }
+
+    private MutableContainer _container;
+    private ComponentKey     _key;
+
+    private void register(DefaultComponentStrategyType type)
+    {
+        _container = newContainer();
+
+        _key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(_key, SlowList.class, null, null);
+        _container.wrapComponentStrategy(_key, type);
+
+        resetInstanceCount(SlowList.class);
+    }
+
+    public void testConcurrentCallersShareOneBuild() throws Exception
+    {
+        register(DefaultComponentStrategyType.SOFT_SINGLETON);
+
+        final List list = (List) _container.getComponentInstance(_key);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(8);
+        final List failures = Collections.synchronizedList(new ArrayList());
+
+        for (int i = 0; i < 8; i++)
+        {
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+
+                        list.add("item");
+                    }
+                    catch (Throwable t)
+                    {
+                        failures.add(t);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        start.countDown();
+        done.await();
+
+        assertEquals(failures.toString(), 0, failures.size());
+        assertEquals(1, getInstanceCount(SlowList.class));
+        assertEquals(8, list.size());
+    }
+
+    public void testRebuildsAfterCleared() throws Exception
+    {
+        register(DefaultComponentStrategyType.WEAK_SINGLETON);
+
+        List list = (List) _container.getComponentInstance(_key);
+
+        list.add("item");
+
+        assertEquals(1, list.size());
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        // The proxy does not hold the instance, nothing else does
+        while (list.size() > 0 && System.currentTimeMillis() < deadline)
+        {
+            System.gc();
+
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, list.size());
+        assertEquals(2, getInstanceCount(SlowList.class));
+    }
+}
@@ -0,0 +1,204 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentCallback;
+import gravity.ComponentKey;
+import gravity.ComponentPhase;
+import gravity.GravityTestCase;
+import gravity.plugins.RefreshingComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class RefreshingComponentStrategyTest extends GravityTestCase
+{
+    private static volatile long    _buildMillis;
+    private static volatile boolean _failBuild;
+
+    private static final List       CLOSED = Collections.synchronizedList(new ArrayList());
+
+    /**
+     * This holds its generation, the number of lists built before it plus one.
+     */
+    public static class Snapshot extends ArrayList
+    {
+        public Snapshot() throws InterruptedException
+        {
+            if (_failBuild)
+                throw new IllegalStateException("Source unavailable");
+
+            Thread.sleep(_buildMillis);
+
+            add(new Integer(countInstance(Snapshot.class)));
+        }
+
+        public void close()
+        {
+            CLOSED.add(get(0));
+        }
+    }
+
+    private DefaultContainer _container;
+    private ComponentKey     _key;
+
+    private List newSnapshot(long timeToLive, long refreshAhead)
+    {
+        // The replaced instances of the other tests are not retired while the tests run
+        return newSnapshot(timeToLive, refreshAhead, 60000);
+    }
+
+    private List newSnapshot(long timeToLive, long refreshAhead, long retirementDelay)
+    {
+        _container = newContainer(RefreshingComponentStrategy.RETIREMENT_DELAY_KEY, new Long(
+            retirementDelay));
+
+        _key = _container.getComponentKey(List.class);
+
+        ComponentCallback[] callbacks = {new ComponentCallback("close", null,
+            ComponentPhase.SHUTDOWN)};
+
+        _container.registerComponentImplementation(_key, Snapshot.class, null, callbacks);
+        _container.wrapComponentStrategy(_key, new RefreshingComponentStrategyType(timeToLive,
+            refreshAhead));
+
+        resetInstanceCount(Snapshot.class);
+        _buildMillis = 0;
+        _failBuild = false;
+        CLOSED.clear();
+
+        List snapshot = (List) _container.getComponentInstance(_key);
+
+        // The first build is done by the first caller
+        assertEquals(1, generation(snapshot));
+
+        return snapshot;
+    }
+
+    private RefreshingComponentStrategy getStrategy()
+    {
+        return (RefreshingComponentStrategy) _container.getComponentStrategy(_key);
+    }
+
+    private static int generation(List snapshot)
+    {
+        return ((Integer) snapshot.get(0)).intValue();
+    }
+
+    private void awaitRefreshes(long count) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (getStrategy().getRefreshCount() + getStrategy().getRefreshFailureCount() < count
+            && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+    }
+
+    public void testRefreshesAhead() throws Exception
+    {
+        List snapshot = newSnapshot(200, 150);
+
+        assertEquals(1, generation(snapshot));
+        assertEquals(1, generation(snapshot));
+
+        Thread.sleep(80);
+
+        // Within the refresh-ahead period the current instance is served while it is rebuilt
+        assertEquals(1, generation(snapshot));
+
+        awaitRefreshes(1);
+
+        assertEquals(2, generation(snapshot));
+        assertEquals(0, getStrategy().getStaleServedCount());
+        assertEquals(2, getInstanceCount(Snapshot.class));
+    }
+
+    public void testServesStaleWhileRebuilding() throws Exception
+    {
+        List snapshot = newSnapshot(20, 0);
+
+        _buildMillis = 300;
+
+        Thread.sleep(40);
+
+        long start = System.currentTimeMillis();
+
+        assertEquals(1, generation(snapshot));
+        assertEquals(1, generation(snapshot));
+
+        // The callers did not wait for the rebuild
+        assertTrue(System.currentTimeMillis() - start < 250);
+        assertEquals(2, getStrategy().getStaleServedCount());
+
+        awaitRefreshes(1);
+
+        assertEquals(2, generation(snapshot));
+        assertTrue(getStrategy().getLastRefreshMillis() >= 300);
+    }
+
+    public void testKeepsInstanceWhenRebuildFails() throws Exception
+    {
+        List snapshot = newSnapshot(20, 0);
+
+        _failBuild = true;
+
+        Thread.sleep(40);
+
+        assertEquals(1, generation(snapshot));
+
+        awaitRefreshes(1);
+
+        assertEquals(1, getStrategy().getRefreshFailureCount());
+        assertNotNull(getStrategy().getLastRefreshFailure());
+
+        _failBuild = false;
+
+        // The next request tries again
+        assertEquals(1, generation(snapshot));
+
+        awaitRefreshes(2);
+
+        assertEquals(2, generation(snapshot));
+    }
+
+    public void testRetiresReplacedInstances() throws Exception
+    {
+        List snapshot = newSnapshot(20, 0, 50);
+
+        Thread.sleep(40);
+
+        assertEquals(1, generation(snapshot));
+
+        awaitRefreshes(1);
+
+        assertEquals(2, generation(snapshot));
+
+        // The replaced instance is left to the calls that may still be using it
+        assertTrue(CLOSED.isEmpty());
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (getStrategy().getRetiredCount() < 1 && System.currentTimeMillis() < deadline)
+            Thread.sleep(5);
+
+        assertEquals(Collections.singletonList(new Integer(1)), CLOSED);
+        assertNull(getStrategy().getLastRetirementFailure());
+    }
+}
@@ -0,0 +1,169 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentCallback;
+import gravity.ComponentKey;
+import gravity.ComponentPhase;
+import gravity.ComponentScope;
+import gravity.GravityTestCase;
+import gravity.plugins.DefaultComponentStrategyType;
+import gravity.util.Pool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ScopedComponentStrategyTest extends GravityTestCase
+{
+    private static final List SHUT_DOWN = Collections.synchronizedList(new ArrayList());
+
+    public static class ClosableList extends ArrayList
+    {
+        public void close()
+        {
+            SHUT_DOWN.add(this);
+        }
+    }
+
+    private DefaultContainer _container;
+    private ComponentKey     _key;
+
+    protected void setUp()
+    {
+        _container = newContainer();
+
+        _key = _container.getComponentKey(List.class);
+
+        ComponentCallback[] callbacks = {new ComponentCallback("close", null,
+            ComponentPhase.SHUTDOWN)};
+
+        _container.registerComponentImplementation(_key, ClosableList.class, null, callbacks);
+
+        SHUT_DOWN.clear();
+    }
+
+    public void testOneInstancePerScope()
+    {
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.SCOPED);
+
+        List list = (List) _container.getComponentInstance(_key);
+
+        ComponentScope outer = _container.openScope();
+
+        list.add("outer");
+
+        assertSame(outer, _container.getCurrentScope());
+        assertEquals(1, ((List) _container.getComponentInstance(_key)).size());
+
+        ComponentScope inner = _container.openScope();
+
+        assertSame(outer, inner.getEnclosingScope());
+        assertEquals(0, list.size());
+
+        list.add("inner");
+
+        inner.close();
+        inner.close();
+
+        assertTrue(inner.isClosed());
+        assertSame(outer, _container.getCurrentScope());
+        assertEquals(1, SHUT_DOWN.size());
+        assertEquals("inner", ((List) SHUT_DOWN.get(0)).get(0));
+
+        // The outer instance is current again
+        assertEquals("outer", list.get(0));
+        assertEquals(1, outer.size());
+
+        outer.close();
+
+        assertNull(_container.getCurrentScope());
+        assertEquals(2, SHUT_DOWN.size());
+        assertEquals("outer", ((List) SHUT_DOWN.get(1)).get(0));
+    }
+
+    public void testRequiresScope()
+    {
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.SCOPED);
+
+        try
+        {
+            ((List) _container.getComponentInstance(_key)).size();
+
+            fail("Expected the scoped component to require a scope");
+        }
+        catch (RuntimeException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().indexOf("No scope is open") > -1);
+        }
+    }
+
+    public void testReturnsPooledInstances()
+    {
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.POOLING);
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.SCOPED);
+
+        Pool pool = _container.getComponentPool(_key);
+
+        ComponentScope scope = _container.openScope();
+
+        List list = (List) _container.getComponentInstance(_key);
+        list.add("item");
+
+        assertEquals(1, pool.getActiveCount());
+
+        scope.close();
+
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+
+        // Pooled instances live on, they are not shut down
+        assertEquals(0, SHUT_DOWN.size());
+
+        scope = _container.openScope();
+
+        assertEquals(1, list.size());
+
+        scope.close();
+    }
+
+    public void testSharedInstancesAreNotShutDown()
+    {
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.SINGLETON);
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.SCOPED);
+
+        ComponentScope scope = _container.openScope();
+
+        List list = (List) _container.getComponentInstance(_key);
+        list.add("item");
+
+        scope.close();
+
+        // The singleton is shared beyond the scope, it lives on
+        assertEquals(0, SHUT_DOWN.size());
+
+        scope = _container.openScope();
+
+        assertEquals(1, list.size());
+
+        scope.close();
+
+        assertEquals(0, SHUT_DOWN.size());
+    }
+}
@@ -0,0 +1,206 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.GravityTestCase;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class SingletonInitializationTest extends GravityTestCase
+{
+    private static DefaultContainer _container;
+    private static ComponentKey     _firstKey;
+    private static ComponentKey     _secondKey;
+
+    private static CountDownLatch   _building;
+
+    public static interface Named
+    {
+        String getName();
+    }
+
+    public static class SlowNamed implements Named
+    {
+        public SlowNamed() throws InterruptedException
+        {
+            if (countInstance(SlowNamed.class) == 1)
+                throw new IllegalStateException("First build fails");
+
+            Thread.sleep(50);
+        }
+
+        public String getName()
+        {
+            return "slow";
+        }
+    }
+
+    /**
+     * This needs the other named component while it is built.
+     */
+    public static class DependentNamed implements Named
+    {
+        private String _name;
+
+        public DependentNamed(String name, String dependency) throws InterruptedException
+        {
+            _building.countDown();
+            _building.await();
+
+            ComponentKey key = dependency.equals("first") ? _firstKey : _secondKey;
+
+            _name = name + " after " + ((Named) _container.getComponentInstance(key)).getName();
+        }
+
+        public String getName()
+        {
+            return _name;
+        }
+    }
+
+    protected void setUp()
+    {
+        _container = newContainer();
+
+        _firstKey = _container.getComponentKey(Named.class, "first");
+        _secondKey = _container.getComponentKey(Named.class, "second");
+
+        resetInstanceCount(SlowNamed.class);
+    }
+
+    /**
+     * The wrapped exceptions are only reachable through the stack trace.
+     */
+    private static boolean isCausedBy(Throwable t, String message)
+    {
+        ByteArrayOutputStream trace = new ByteArrayOutputStream();
+
+        t.printStackTrace(new PrintStream(trace));
+
+        return trace.toString().indexOf(message) > -1;
+    }
+
+    private Thread[] start(final ComponentKey[] keys, final List results)
+    {
+        Thread[] threads = new Thread[keys.length];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            final ComponentKey key = keys[i];
+
+            threads[i] = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        results.add(((Named) _container.getComponentInstance(key)).getName());
+                    }
+                    catch (Throwable t)
+                    {
+                        results.add(t);
+                    }
+                }
+            });
+
+            threads[i].start();
+        }
+
+        return threads;
+    }
+
+    private void join(Thread[] threads) throws InterruptedException
+    {
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i].join(5000);
+
+            assertFalse("Deadlocked", threads[i].isAlive());
+        }
+    }
+
+    public void testBuildsOnce() throws Exception
+    {
+        _container.registerComponentImplementation(_firstKey, SlowNamed.class, null, null);
+        _container.wrapComponentStrategy(_firstKey, DefaultComponentStrategyType.SINGLETON);
+
+        // The failed build is not cached
+        try
+        {
+            ((Named) _container.getComponentInstance(_firstKey)).getName();
+
+            fail("Expected the first build to fail");
+        }
+        catch (RuntimeException e)
+        {
+            assertTrue(isCausedBy(e, "First build fails"));
+        }
+
+        ComponentKey[] keys = new ComponentKey[8];
+
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = _firstKey;
+
+        List results = Collections.synchronizedList(new ArrayList());
+
+        join(start(keys, results));
+
+        assertEquals(8, results.size());
+        assertEquals(Collections.nCopies(8, "slow"), results);
+
+        // The concurrent callers waited for the one build
+        assertEquals(2, getInstanceCount(SlowNamed.class));
+
+        SingletonComponentStrategy strategy = (SingletonComponentStrategy) _container
+            .getComponentStrategy(_firstKey);
+
+        assertTrue(strategy.getRealizedInstance() instanceof SlowNamed);
+    }
+
+    public void testDependencyCycleFails() throws Exception
+    {
+        _building = new CountDownLatch(2);
+
+        _container.registerComponentImplementation(_firstKey, DependentNamed.class, new Object[]{
+            "first", "second"}, null);
+        _container.registerComponentImplementation(_secondKey, DependentNamed.class,
+            new Object[]{"second", "first"}, null);
+
+        _container.wrapComponentStrategy(_firstKey, DefaultComponentStrategyType.SINGLETON);
+        _container.wrapComponentStrategy(_secondKey, DefaultComponentStrategyType.SINGLETON);
+
+        List results = Collections.synchronizedList(new ArrayList());
+
+        // Each thread builds one singleton that waits for the other
+        join(start(new ComponentKey[]{_firstKey, _secondKey}, results));
+
+        assertEquals(2, results.size());
+
+        for (int i = 0; i < 2; i++)
+            assertTrue(String.valueOf(results.get(i)), isCausedBy((Throwable) results.get(i),
+                "Dependency cycle detected"));
+    }
+}
@@ -0,0 +1,166 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.ComponentProxy;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class StripedComponentStrategyTest extends GravityTestCase
+{
+    public static interface Counter
+    {
+        int increment();
+    }
+
+    /**
+     * This counter fails when it is used by two threads at once.
+     */
+    public static class UnsafeCounter implements Counter
+    {
+        private AtomicBoolean _inUse = new AtomicBoolean();
+        private int           _count;
+
+        public UnsafeCounter()
+        {
+            countInstance(UnsafeCounter.class);
+        }
+
+        public int increment()
+        {
+            if (!_inUse.compareAndSet(false, true))
+                throw new IllegalStateException("Counter used concurrently");
+
+            try
+            {
+                Thread.yield();
+
+                return ++_count;
+            }
+            finally
+            {
+                _inUse.set(false);
+            }
+        }
+    }
+
+    private MutableContainer newContainer(int stripeCount)
+    {
+        resetInstanceCount(UnsafeCounter.class);
+
+        return newContainer(StripedComponentStrategy.STRIPE_COUNT_KEY, new Integer(stripeCount));
+    }
+
+    private Counter newStripedCounter(MutableContainer container)
+    {
+        ComponentKey key = container.getComponentKey(Counter.class);
+
+        container.registerComponentImplementation(key, UnsafeCounter.class, null, null);
+        container.wrapComponentStrategy(key, DefaultComponentStrategyType.STRIPED);
+
+        return (Counter) container.getComponentInstance(key);
+    }
+
+    public void testStripesAreNeverUsedConcurrently() throws Exception
+    {
+        final Counter counter = newStripedCounter(newContainer(3));
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(8);
+        final List failures = Collections.synchronizedList(new ArrayList());
+
+        for (int i = 0; i < 8; i++)
+        {
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+
+                        for (int j = 0; j < 5000; j++)
+                            counter.increment();
+                    }
+                    catch (Throwable t)
+                    {
+                        failures.add(t);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        start.countDown();
+        done.await();
+
+        assertEquals(failures.toString(), 0, failures.size());
+        assertTrue(getInstanceCount(UnsafeCounter.class) <= 3);
+    }
+
+    public void testSingleStripeIsShared()
+    {
+        MutableContainer container = newContainer(1);
+
+        Counter counter = newStripedCounter(container);
+
+        assertEquals(1, counter.increment());
+        assertEquals(2, counter.increment());
+
+        Counter other = (Counter) container.getComponentInstance(container.getComponentKey(
+            Counter.class));
+
+        assertEquals(3, other.increment());
+        assertEquals(1, getInstanceCount(UnsafeCounter.class));
+    }
+
+    public void testRequiresInterface()
+    {
+        // Only cglib proxies can be keyed by a class
+        MutableContainer container = newContainer(ComponentProxy.class, CglibComponentProxy.class);
+
+        ComponentKey key = container.getComponentKey(ArrayList.class);
+
+        container.registerComponentImplementation(key, ArrayList.class, null, null);
+        container.wrapComponentStrategy(key, DefaultComponentStrategyType.STRIPED);
+
+        try
+        {
+            ((List) container.getComponentInstance(key)).size();
+
+            fail("Expected the striped component to require an interface");
+        }
+        catch (RuntimeException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().indexOf(
+                "Striped component must be keyed by an interface") > -1);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.MutableContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the cost of running tasks, one virtual thread each, that use a component with the thread
+ * local strategy and with the thread affinity strategy, along with the number of instances each
+ * strategy creates. Where the virtual machine has no virtual threads, the tasks run on a fixed pool
+ * of platform threads instead, and both strategies keep one instance per thread. This is not a unit
+ * test, run it from the command line with an optional task count:
+ * 
+ * <pre>
+ *   java gravity.impl.ThreadAffinityBenchmark [tasks]
+ * </pre>
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ThreadAffinityBenchmark
+{
+    private static final int           ROUNDS  = 3;
+
+    private static final int           CALLS   = 10;
+
+    private static final AtomicInteger CREATED = new AtomicInteger();
+
+    public static interface Buffer
+    {
+        int append(int value);
+    }
+
+    public static class DefaultBuffer implements Buffer
+    {
+        private StringBuffer _buffer = new StringBuffer();
+
+        public DefaultBuffer()
+        {
+            CREATED.incrementAndGet();
+        }
+
+        public int append(int value)
+        {
+            _buffer.setLength(0);
+
+            return _buffer.append(value).length();
+        }
+    }
+
+    private boolean _virtual;
+
+    private ExecutorService newExecutor()
+    {
+        try
+        {
+            _virtual = true;
+
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor",
+                new Class[0]).invoke(null, new Object[0]);
+        }
+        catch (Exception e)
+        {
+            _virtual = false;
+
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4);
+        }
+    }
+
+    private Buffer newBuffer(DefaultComponentStrategyType type)
+    {
+        DefaultApplicationContext appContext = new DefaultApplicationContext("benchmark", null);
+        appContext.putContextItem(MutableContainer.PLUGINS_AUTOLOAD_KEY, Boolean.FALSE);
+
+        appContext.initializeFramework();
+
+        MutableContainer container = appContext.getMutableContainer();
+
+        ComponentKey key = container.getComponentKey(Buffer.class);
+
+        container.registerComponentImplementation(key, DefaultBuffer.class, null, null);
+        container.wrapComponentStrategy(key, type);
+
+        return (Buffer) container.getComponentInstance(key);
+    }
+
+    private long timeTasks(DefaultComponentStrategyType type, int tasks) throws Exception
+    {
+        final Buffer buffer = newBuffer(type);
+        final CountDownLatch done = new CountDownLatch(tasks);
+        final AtomicInteger failures = new AtomicInteger();
+
+        CREATED.set(0);
+
+        ExecutorService executor = newExecutor();
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < tasks; i++)
+        {
+            final int value = i;
+
+            executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int j = 0; j < CALLS; j++)
+                            buffer.append(value);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        failures.incrementAndGet();
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+
+        done.await();
+
+        long nanos = System.nanoTime() - start;
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        if (failures.get() > 0)
+            System.out.println(failures.get() + " tasks failed");
+
+        return nanos;
+    }
+
+    private static String perTask(long nanos, int tasks)
+    {
+        return (nanos / tasks) + " ns/task";
+    }
+
+    public void run(int tasks) throws Exception
+    {
+        // Warm up both strategies
+        timeTasks(DefaultComponentStrategyType.THREAD_LOCAL, tasks);
+        timeTasks(DefaultComponentStrategyType.THREAD_AFFINITY, tasks);
+
+        System.out.println(tasks + " tasks on " + (_virtual ? "virtual" : "pooled platform")
+            + " threads");
+
+        for (int i = 0; i < ROUNDS; i++)
+        {
+            long localNanos = timeTasks(DefaultComponentStrategyType.THREAD_LOCAL, tasks);
+            int localCreated = CREATED.get();
+
+            long affinityNanos = timeTasks(DefaultComponentStrategyType.THREAD_AFFINITY, tasks);
+            int affinityCreated = CREATED.get();
+
+            System.out.println("Round " + (i + 1) + ": thread local " + perTask(localNanos, tasks)
+                + " (" + localCreated + " instances), thread affinity "
+                + perTask(affinityNanos, tasks) + " (" + affinityCreated + " instances)");
+        }
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        new ThreadAffinityBenchmark().run(tasks);
+    }
+}
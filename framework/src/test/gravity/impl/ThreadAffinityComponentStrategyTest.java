@@ -0,0 +1,153 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.GravityTestCase;
+import gravity.MutableContainer;
+import gravity.impl.StripedComponentStrategyTest.Counter;
+import gravity.impl.StripedComponentStrategyTest.UnsafeCounter;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ThreadAffinityComponentStrategyTest extends GravityTestCase
+{
+    /**
+     * This takes the threads whose names start with "virtual" for virtual threads, so that the
+     * shared cache can be tested on virtual machines without virtual threads.
+     */
+    public static class SimulatedThreadAffinityComponentStrategy extends
+        ThreadAffinityComponentStrategy
+    {
+        protected boolean isVirtual(Thread thread)
+        {
+            return thread.getName().startsWith("virtual");
+        }
+    }
+
+    private static class SimulatedStrategyType extends DefaultComponentStrategyType
+    {
+        private SimulatedStrategyType()
+        {
+            super(SimulatedThreadAffinityComponentStrategy.class.getName());
+        }
+    }
+
+    private static final DefaultComponentStrategyType SIMULATED = new SimulatedStrategyType();
+
+    private Counter newCounter(DefaultComponentStrategyType type, int cacheSize)
+    {
+        MutableContainer container = newContainer(ThreadAffinityComponentStrategy.CACHE_SIZE_KEY,
+            new Integer(cacheSize));
+
+        ComponentKey key = container.getComponentKey(Counter.class);
+
+        container.registerComponentImplementation(key, UnsafeCounter.class, null, null);
+        container.wrapComponentStrategy(key, type);
+
+        resetInstanceCount(UnsafeCounter.class);
+
+        return (Counter) container.getComponentInstance(key);
+    }
+
+    private List runThreads(String namePrefix, int threads, final int calls, final Counter counter)
+        throws Exception
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final List failures = Collections.synchronizedList(new ArrayList());
+
+        for (int i = 0; i < threads; i++)
+        {
+            new Thread(namePrefix + i)
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+
+                        for (int j = 0; j < calls; j++)
+                            counter.increment();
+                    }
+                    catch (Throwable t)
+                    {
+                        failures.add(t);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        start.countDown();
+        done.await();
+
+        return failures;
+    }
+
+    public void testPlatformThreadsKeepTheirOwnInstance() throws Exception
+    {
+        Counter counter = newCounter(SIMULATED, 2);
+
+        assertEquals(1, counter.increment());
+
+        List failures = runThreads("platform", 4, 100, counter);
+
+        assertEquals(failures.toString(), 0, failures.size());
+        assertEquals(5, getInstanceCount(UnsafeCounter.class));
+        assertEquals(2, counter.increment());
+    }
+
+    public void testVirtualThreadsShareTheCache() throws Exception
+    {
+        Counter counter = newCounter(SIMULATED, 2);
+
+        // This platform thread keeps its own instance
+        assertEquals(1, counter.increment());
+        assertEquals(2, counter.increment());
+
+        List failures = runThreads("virtual", 50, 200, counter);
+
+        assertEquals(failures.toString(), 0, failures.size());
+        assertTrue(getInstanceCount(UnsafeCounter.class) <= 3);
+
+        // The instance of this thread was not touched by the virtual threads
+        assertEquals(3, counter.increment());
+    }
+
+    public void testDetectsVirtualThreads()
+    {
+        ThreadAffinityComponentStrategy strategy = new ThreadAffinityComponentStrategy();
+
+        // This is a platform thread, on every virtual machine
+        assertFalse(strategy.isVirtual(Thread.currentThread()));
+
+        Counter counter = newCounter(DefaultComponentStrategyType.THREAD_AFFINITY, 2);
+
+        assertEquals(1, counter.increment());
+        assertEquals(1, getInstanceCount(UnsafeCounter.class));
+    }
+}
@@ -0,0 +1,158 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.impl;
+
+import gravity.ComponentKey;
+import gravity.GravityTestCase;
+import gravity.plugins.DefaultComponentStrategyType;
+import gravity.util.Pool;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the reclamation of the instances of dead threads from thread local components, that are
+ * pooled so their return is visible.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ThreadLocalReclamationTest extends GravityTestCase
+{
+    public static class FailingThreadLocalComponentStrategy extends ThreadLocalComponentStrategy
+    {
+        protected void reclaim()
+        {
+            throw new IllegalStateException("Sweep failed");
+        }
+    }
+
+    private static class FailingStrategyType extends DefaultComponentStrategyType
+    {
+        private FailingStrategyType()
+        {
+            super(FailingThreadLocalComponentStrategy.class.getName());
+        }
+    }
+
+    private DefaultContainer _container;
+    private ComponentKey     _key;
+
+    private void newContainer(long reclaimInterval)
+    {
+        _container = newContainer(ThreadLocalComponentStrategy.RECLAIM_INTERVAL_KEY, new Long(
+            reclaimInterval));
+
+        _key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(_key, ArrayList.class, null, null);
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.POOLING);
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.THREAD_LOCAL);
+    }
+
+    private void useInNewThread() throws Exception
+    {
+        final List list = (List) _container.getComponentInstance(_key);
+
+        // The thread dies without notifying its observers
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                list.add("item");
+            }
+        };
+
+        thread.start();
+        thread.join();
+    }
+
+    public void testReclaimsInstancesOfDeadThreads() throws Exception
+    {
+        newContainer(10);
+
+        useInNewThread();
+
+        Pool pool = _container.getComponentPool(_key);
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (pool.getActiveCount() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0, _container.getThreadBoundCount(_key));
+    }
+
+    public void testNotifiedThreadsAreNotReclaimed() throws Exception
+    {
+        newContainer(10);
+
+        List list = (List) _container.getComponentInstance(_key);
+        list.add("item");
+
+        assertEquals(1, _container.getThreadBoundCount(_key));
+
+        _container.handlePreThreadTermination();
+
+        assertEquals(0, _container.getThreadBoundCount(_key));
+        assertEquals(1, _container.getComponentPool(_key).getIdleCount());
+
+        // The instance is bound again on the next use
+        list.size();
+
+        assertEquals(1, _container.getThreadBoundCount(_key));
+        assertEquals(1, _container.getComponentPool(_key).getActiveCount());
+    }
+
+    public void testDoesNotTrackByDefault() throws Exception
+    {
+        newContainer(0);
+
+        useInNewThread();
+
+        assertEquals(0, _container.getThreadBoundCount(_key));
+        assertEquals(1, _container.getComponentPool(_key).getActiveCount());
+    }
+
+    public void testRecordsReclamationFailures() throws Exception
+    {
+        newContainer(10);
+
+        ComponentKey key = _container.getComponentKey(List.class, "failing");
+
+        _container.registerComponentImplementation(key, ArrayList.class, null, null);
+        _container.wrapComponentStrategy(key, new FailingStrategyType());
+
+        ThreadLocalComponentStrategy strategy = (ThreadLocalComponentStrategy) _container
+            .getComponentStrategy(key);
+
+        useInNewThread();
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while ((strategy.getReclamationFailureCount() < 2 || _container.getComponentPool(_key)
+            .getActiveCount() > 0)
+            && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertTrue(strategy.getReclamationFailureCount() >= 2);
+        assertSuperString(strategy.getLastReclamationFailure(), "Sweep failed");
+
+        // The sweeps of the other strategies go on
+        assertEquals(0, _container.getComponentPool(_key).getActiveCount());
+    }
+}
@@ -0,0 +1,119 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.util;
+
+import gravity.ComponentKey;
+import gravity.GravityTestCase;
+import gravity.impl.DefaultContainer;
+import gravity.plugins.DefaultComponentStrategyType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the reclamation of thread local instances, that are pooled so their return is visible,
+ * from the threads of an executor.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class CleaningExecutorServiceTest extends GravityTestCase
+{
+    private DefaultContainer _container;
+    private ComponentKey     _key;
+    private ThreadEvent      _threadEvent;
+
+    protected void setUp()
+    {
+        _container = newContainer();
+
+        _key = _container.getComponentKey(List.class);
+
+        _container.registerComponentImplementation(_key, ArrayList.class, null, null);
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.POOLING);
+        _container.wrapComponentStrategy(_key, DefaultComponentStrategyType.THREAD_LOCAL);
+
+        _threadEvent = (ThreadEvent) _container.getConfiguration(ThreadEvent.class);
+    }
+
+    private Runnable newTask()
+    {
+        final List list = (List) _container.getComponentInstance(_key);
+
+        return new Runnable()
+        {
+            public void run()
+            {
+                list.add("item");
+            }
+        };
+    }
+
+    /**
+     * Runs the tasks one after the other on a single worker, that is not cleaned up when it
+     * terminates.
+     * 
+     * @return Returns the number of instances that are still held by the worker.
+     */
+    private int runTasks(int cleanupInterval, int tasks) throws Exception
+    {
+        ExecutorService executor = new CleaningExecutorService(_threadEvent,
+            Executors.newSingleThreadExecutor(), cleanupInterval);
+
+        for (int i = 0; i < tasks; i++)
+            executor.execute(newTask());
+
+        executor.shutdown();
+
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        return _container.getComponentPool(_key).getActiveCount();
+    }
+
+    public void testCleansUpAfterEveryTask() throws Exception
+    {
+        assertEquals(0, runTasks(1, 3));
+
+        // The same pooled instance was reclaimed after each task and loaned to the next
+        assertEquals(1, _container.getComponentPool(_key).getIdleCount());
+    }
+
+    public void testCleansUpAtInterval() throws Exception
+    {
+        // The third task's instance is held until the fourth task completes
+        assertEquals(1, runTasks(2, 3));
+    }
+
+    public void testNeverCleansUpWithoutInterval() throws Exception
+    {
+        assertEquals(1, runTasks(0, 3));
+    }
+
+    public void testCleansUpWhenThreadTerminates() throws Exception
+    {
+        Thread thread = new CleaningThreadFactory(_threadEvent).newThread(newTask());
+
+        thread.start();
+        thread.join();
+
+        Pool pool = _container.getComponentPool(_key);
+
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+    }
+}
@@ -0,0 +1,115 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.util;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the throughput of {@link Pool}with 1, 8 and 64 threads that each repeatedly loan an
+ * object, creating one when the pool is empty, and collect it back. The multi-threaded runs only
+ * measure contention with as many processors as threads, on fewer processors they mostly measure
+ * the scheduling of the threads. This is not a unit test, run it from the command line with an
+ * optional iteration count per thread:
+ * 
+ * <pre>
+ *   java gravity.util.PoolBenchmark [iterations]
+ * </pre>
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class PoolBenchmark
+{
+    private static final int[] THREADS   = {1, 8, 64};
+
+    private static final int   ROUNDS    = 3;
+
+    private static final int   POOL_SIZE = 10;
+
+    private static long timeLoans(final Pool pool, int threads, final int iterations)
+        throws InterruptedException
+    {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; i++)
+        {
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+
+                        for (int j = 0; j < iterations; j++)
+                        {
+                            Object obj = pool.loan();
+
+                            if (obj == null)
+                            {
+                                obj = new Object();
+
+                                pool.loaned(obj);
+                            }
+
+                            pool.collect(obj);
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // Fall through
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        long begin = System.nanoTime();
+
+        start.countDown();
+        done.await();
+
+        return System.nanoTime() - begin;
+    }
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        System.out.println(Runtime.getRuntime().availableProcessors() + " processors");
+
+        for (int i = 0; i < THREADS.length; i++)
+        {
+            Pool pool = new Pool(POOL_SIZE);
+
+            // Warm up
+            timeLoans(pool, THREADS[i], iterations);
+
+            for (int j = 0; j < ROUNDS; j++)
+            {
+                long nanos = timeLoans(pool, THREADS[i], iterations);
+
+                long opsPerSec = THREADS[i] * (long) iterations * 1000000000L / nanos;
+
+                System.out.println(THREADS[i] + " threads, round " + (j + 1) + ": " + opsPerSec
+                    + " loan/collect pairs/s");
+            }
+        }
+    }
+}
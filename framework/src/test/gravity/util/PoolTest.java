@@ -0,0 +1,545 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.util;
+
+import gravity.GravityTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class PoolTest extends GravityTestCase
+{
+    /**
+     * The pool must never call equals.
+     */
+    private static class Item
+    {
+        private AtomicBoolean _inUse = new AtomicBoolean();
+
+        public boolean equals(Object obj)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        public int hashCode()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private Pool _pool = new Pool(2);
+
+    private Object newLoanedItem()
+    {
+        Object item = new Item();
+
+        _pool.loaned(item);
+
+        return item;
+    }
+
+    public void testLoanAndCollect()
+    {
+        assertNull(_pool.loan());
+
+        Object item = newLoanedItem();
+
+        _pool.collect(item);
+
+        assertSame(item, _pool.loan());
+        assertNull(_pool.loan());
+    }
+
+    public void testIgnoresForeignItems()
+    {
+        _pool.collect(new Item());
+        _pool.collect(null);
+
+        assertNull(_pool.loan());
+    }
+
+    public void testIgnoresRepeatedCollection()
+    {
+        Object item = newLoanedItem();
+
+        _pool.collect(item);
+        _pool.collect(item);
+
+        assertSame(item, _pool.loan());
+        assertNull(_pool.loan());
+    }
+
+    public void testIsBounded()
+    {
+        Object item1 = newLoanedItem();
+        Object item2 = newLoanedItem();
+        Object item3 = newLoanedItem();
+
+        _pool.collect(item1);
+        _pool.collect(item2);
+        _pool.collect(item3);
+
+        assertNotNull(_pool.loan());
+        assertNotNull(_pool.loan());
+        assertNull(_pool.loan());
+
+        // The dropped item is no longer accepted
+        _pool.collect(item3);
+
+        _pool.loan();
+        _pool.loan();
+
+        assertNull(_pool.loan());
+    }
+
+    public void testLimitsActiveLoans() throws Exception
+    {
+        Pool pool = new Pool(2, 1);
+
+        assertTrue(pool.reserveLoan(0));
+
+        Object item = new Item();
+
+        pool.loaned(item);
+
+        assertEquals(1, pool.getActiveCount());
+        assertFalse(pool.reserveLoan(0));
+        assertFalse(pool.reserveLoan(20));
+        assertEquals(2, pool.getTimeoutCount());
+        assertEquals(1, pool.getWaitCount());
+
+        pool.collect(item);
+
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, pool.getIdleCount());
+        assertTrue(pool.reserveLoan(0));
+        assertSame(item, pool.loan());
+
+        pool.collect(item);
+
+        // A cancelled reservation does not count as a loan
+        assertTrue(pool.reserveLoan(0));
+
+        pool.cancelLoan();
+
+        assertTrue(pool.reserveLoan(0));
+    }
+
+    public void testWaitingReservationGetsCollectedItem() throws Exception
+    {
+        final Pool pool = new Pool(2, 1);
+
+        pool.reserveLoan(-1);
+
+        final Object item = new Item();
+
+        pool.loaned(item);
+
+        final Object[] loaned = new Object[1];
+
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    if (pool.reserveLoan(-1))
+                        loaned[0] = pool.loan();
+                }
+                catch (InterruptedException e)
+                {
+                    // Fall through
+                }
+            }
+        };
+
+        thread.start();
+
+        while (pool.getWaitingCount() == 0)
+            Thread.sleep(5);
+
+        pool.collect(item);
+
+        thread.join();
+
+        assertSame(item, loaned[0]);
+        assertEquals(0, pool.getWaitingCount());
+    }
+
+    public void testDiscardKeepsReservation() throws Exception
+    {
+        Pool pool = new Pool(2, 1);
+
+        assertTrue(pool.reserveLoan(0));
+
+        Object item = new Item();
+
+        pool.loaned(item);
+        pool.discard(item);
+
+        assertEquals(0, pool.getActiveCount());
+
+        // The reservation is still held, for the replacement
+        assertFalse(pool.reserveLoan(0));
+
+        Object replacement = new Item();
+
+        pool.loaned(replacement);
+
+        // The discarded item is no longer accepted
+        pool.collect(item);
+        pool.collect(replacement);
+
+        assertSame(replacement, pool.loan());
+        assertNull(pool.loan());
+    }
+
+    public void testRegisteringMemberKeepsRecord()
+    {
+        Object item = newLoanedItem();
+
+        Pool.Loan loan = _pool.register(item);
+
+        assertEquals(1, _pool.getActiveCount());
+
+        _pool.collectLoan(loan);
+        _pool.collect(item);
+
+        assertSame(item, _pool.loan());
+        assertNull(_pool.loan());
+
+        _pool.collect(item);
+
+        // The idle item is taken out of the pool, so it is never handed out twice
+        _pool.loaned(item);
+
+        assertEquals(1, _pool.getActiveCount());
+        assertEquals(0, _pool.getIdleCount());
+        assertNull(_pool.loan());
+
+        assertFalse(_pool.addIdle(item));
+
+        _pool.collect(item);
+
+        assertSame(item, _pool.loan());
+    }
+
+    public void testRegisteringLoanedItemCancelsReservation() throws Exception
+    {
+        Pool pool = new Pool(2, 2);
+
+        Object item = new Item();
+
+        assertTrue(pool.reserveLoan(0));
+
+        pool.loaned(item);
+
+        assertTrue(pool.reserveLoan(0));
+
+        // The item stays on its loan, so the second reservation is cancelled
+        pool.loaned(item);
+
+        assertEquals(1, pool.getActiveCount());
+        assertTrue(pool.reserveLoan(0));
+        assertFalse(pool.reserveLoan(0));
+    }
+
+    public void testAddIdle()
+    {
+        Object item1 = new Item();
+        Object item2 = new Item();
+
+        assertTrue(_pool.addIdle(item1));
+        assertTrue(_pool.addIdle(item2));
+        assertFalse(_pool.addIdle(new Item()));
+
+        assertEquals(2, _pool.getIdleCount());
+        assertEquals(0, _pool.getActiveCount());
+
+        Object item = _pool.loan();
+
+        assertTrue(item == item1 || item == item2);
+        assertEquals(1, _pool.getActiveCount());
+
+        _pool.collect(item);
+
+        assertEquals(2, _pool.getIdleCount());
+    }
+
+    public void testEvictsIdleItems() throws Exception
+    {
+        Pool pool = new Pool(3);
+
+        pool.addIdle(new Item());
+        pool.addIdle(new Item());
+
+        assertEquals(0, pool.evict(1000, 0));
+
+        Thread.sleep(20);
+
+        Object fresh = new Item();
+
+        pool.addIdle(fresh);
+
+        // The fresh item is not evicted, and one stale item is kept for the minimum idle count
+        assertEquals(1, pool.evict(10, 2));
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(1, pool.getEvictionCount());
+
+        assertEquals(1, pool.evict(10, 0));
+        assertSame(fresh, pool.loan());
+        assertNull(pool.loan());
+    }
+
+    public void testIdleItemsAreHeldStrongly()
+    {
+        _pool.addIdle(new Item());
+
+        System.gc();
+
+        assertNotNull(_pool.loan());
+    }
+
+    public void testResize()
+    {
+        Pool pool = new Pool(4);
+
+        for (int i = 0; i < 4; i++)
+            pool.addIdle(new Item());
+
+        assertEquals(4, pool.getCapacity());
+        assertEquals(2, pool.resize(2));
+        assertEquals(2, pool.getIdleCount());
+        assertFalse(pool.addIdle(new Item()));
+
+        // The capacity is bounded by the maximum size
+        assertEquals(4, pool.resize(8));
+        assertTrue(pool.addIdle(new Item()));
+    }
+
+    private Object[] loanItems(Pool pool, int count)
+    {
+        Object[] items = new Object[count];
+
+        for (int i = 0; i < count; i++)
+        {
+            items[i] = pool.loan();
+
+            if (items[i] == null)
+            {
+                items[i] = new Item();
+
+                pool.loaned(items[i]);
+            }
+        }
+
+        return items;
+    }
+
+    private void collectItems(Pool pool, Object[] items)
+    {
+        for (int i = 0; i < items.length; i++)
+            pool.collect(items[i]);
+    }
+
+    public void testAdaptsToDemand()
+    {
+        Pool pool = new Pool(8);
+
+        pool.resize(1);
+
+        // Six concurrent loans miss, the pool grows to hold them
+        collectItems(pool, loanItems(pool, 6));
+
+        assertEquals(6, pool.getMissCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(6, pool.adapt(1));
+
+        collectItems(pool, loanItems(pool, 6));
+
+        assertEquals(6, pool.getIdleCount());
+        assertEquals(6, pool.adapt(1));
+
+        // A burst beyond the capacity that mostly finds idle objects does not grow the pool
+        for (int i = 0; i < 2; i++)
+            collectItems(pool, loanItems(pool, 6));
+
+        collectItems(pool, loanItems(pool, 7));
+
+        assertEquals(6, pool.adapt(1));
+
+        // The demand drops to two concurrent loans, the pool shrinks halfway at a time
+        for (int i = 0; i < 3; i++)
+            collectItems(pool, loanItems(pool, 2));
+
+        assertEquals(4, pool.adapt(1));
+        assertEquals(4, pool.getIdleCount());
+
+        collectItems(pool, loanItems(pool, 2));
+
+        assertEquals(3, pool.adapt(1));
+        assertEquals(2, pool.adapt(2));
+        assertEquals(2, pool.adapt(2));
+    }
+
+    private void loanDisposableItem(Pool pool) throws InterruptedException
+    {
+        pool.reserveLoan(0);
+        pool.loaned(new Item());
+    }
+
+    public void testRecoversLoansOfCollectedGarbage() throws Exception
+    {
+        Pool pool = new Pool(2, 1);
+
+        loanDisposableItem(pool);
+
+        System.gc();
+
+        // The reservation waits until the loan of the garbage is found to have lapsed
+        assertTrue(pool.reserveLoan(5000));
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    public void testLoansAreReturnedOnce()
+    {
+        Object item = new Item();
+
+        Pool.Loan loan = _pool.register(item);
+
+        assertSame(item, loan.getItem());
+        assertTrue(loan.isOpen());
+        assertEquals(1, _pool.getActiveCount());
+
+        _pool.collectLoan(loan);
+
+        assertFalse(loan.isOpen());
+        assertEquals(0, _pool.getActiveCount());
+
+        Pool.Loan secondLoan = _pool.borrow();
+
+        assertSame(item, secondLoan.getItem());
+
+        // A returned loan cannot return the object loaned afresh
+        _pool.collectLoan(loan);
+
+        assertEquals(1, _pool.getActiveCount());
+        assertNull(_pool.borrow());
+
+        _pool.collectLoan(secondLoan);
+
+        assertSame(item, _pool.loan());
+    }
+
+    private void leakLoan(Pool pool)
+    {
+        pool.register(new Item());
+    }
+
+    public void testDetectsLeakedLoans() throws Exception
+    {
+        Pool pool = new Pool(2);
+
+        pool.setLeakSampleRate(1);
+
+        leakLoan(pool);
+
+        Pool.Loan loan = pool.register(new Item());
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (pool.getLeakCount() == 0 && System.currentTimeMillis() < deadline)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, pool.getLeakCount());
+
+        Throwable trace = (Throwable) pool.getLeaks().get(0);
+
+        assertTrue(Arrays.asList(trace.getStackTrace()).toString().indexOf("leakLoan") > -1);
+
+        // Returned loans are not leaks
+        pool.collectLoan(loan);
+        pool.loan();
+
+        assertEquals(1, pool.getLeakCount());
+    }
+
+    public void testItemsAreNeverSharedAcrossLoans() throws Exception
+    {
+        final Pool pool = new Pool(4);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(16);
+        final List failures = Collections.synchronizedList(new ArrayList());
+
+        for (int i = 0; i < 16; i++)
+        {
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+
+                        for (int j = 0; j < 10000; j++)
+                        {
+                            Item item = (Item) pool.loan();
+
+                            if (item == null)
+                            {
+                                item = new Item();
+
+                                pool.loaned(item);
+                            }
+
+                            if (!item._inUse.compareAndSet(false, true))
+                                throw new IllegalStateException("Item loaned twice");
+
+                            Thread.yield();
+
+                            item._inUse.set(false);
+
+                            pool.collect(item);
+                        }
+                    }
+                    catch (Throwable t)
+                    {
+                        failures.add(t);
+                    }
+                    finally
+                    {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        start.countDown();
+        done.await();
+
+        assertEquals(failures.toString(), 0, failures.size());
+    }
+}
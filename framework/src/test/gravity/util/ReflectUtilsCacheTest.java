@@ -0,0 +1,117 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.util;
+
+import gravity.GravityTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests that cached resolutions of {@link ReflectUtils}behave like uncached ones.
+ * 
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class ReflectUtilsCacheTest extends GravityTestCase
+{
+    private ReflectUtils _reflectUtils;
+
+    public void setUp()
+    {
+        _reflectUtils = (ReflectUtils) newContainer().getConfiguration(ReflectUtils.class);
+    }
+
+    public void testOverloadsResolveBySignature()
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            List sized = (List) _reflectUtils.invokeConstructor(ArrayList.class,
+                new Object[]{new Integer(5)});
+
+            List copy = (List) _reflectUtils.invokeConstructor(ArrayList.class,
+                new Object[]{Collections.singletonList("item")});
+
+            assertEquals(0, sized.size());
+            assertEquals(1, copy.size());
+        }
+    }
+
+    public void testNullArgumentsResolveSeparately()
+    {
+        StringBuffer buf = (StringBuffer) _reflectUtils.invokeConstructor(StringBuffer.class,
+            new Object[]{"abc"});
+
+        assertEquals("abc", buf.toString());
+
+        _reflectUtils.invokeMethod(buf, "append", new Object[]{"def"});
+        _reflectUtils.invokeMethod(buf, "append", new Object[]{new Integer(1)});
+
+        assertEquals("abcdef1", buf.toString());
+
+        try
+        {
+            _reflectUtils.invokeConstructor(StringBuffer.class, new Object[]{null});
+
+            fail("Expected an exception as StringBuffer(null) is ambiguous but throws");
+        }
+        catch (RuntimeException e)
+        {
+            // Either constructor taking an object throws on null
+        }
+    }
+
+    public void testMethodsAndConstructorsDoNotClash()
+    {
+        List list = (List) _reflectUtils.invokeConstructor(ArrayList.class,
+            new Object[]{new Integer(5)});
+
+        _reflectUtils.invokeMethod(list, "ensureCapacity", new Object[]{new Integer(10)});
+        _reflectUtils.invokeMethod(list, "add", new Object[]{new Integer(10)});
+
+        assertEquals(Collections.singletonList(new Integer(10)), list);
+    }
+
+    public void testMissesAreReported()
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                _reflectUtils.invokeConstructor(Object.class, new Object[]{new Integer(1)});
+
+                fail("Expected a missing constructor");
+            }
+            catch (RuntimeException e)
+            {
+                assertTrue(e.getMessage(), e.getMessage().indexOf(
+                    "Unable to find constructor: java.lang.Object(java.lang.Integer)") > -1);
+            }
+
+            try
+            {
+                _reflectUtils.invokeMethod(new Object(), "missing", new Object[]{"value"});
+
+                fail("Expected a missing method");
+            }
+            catch (RuntimeException e)
+            {
+                assertTrue(e.getMessage(), e.getMessage().indexOf(
+                    "Unable to find method: missing(java.lang.String)") > -1);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright 2004 The Apache Software Foundation
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package gravity.util;
+
+import gravity.GravityTestCase;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * @author Harish Krishnaswamy
+ * @version $Id$
+ */
+public class WeakClassMapTest extends GravityTestCase
+{
+    private WeakClassMap _map = new WeakClassMap();
+
+    public void testGet()
+    {
+        assertNull(_map.get(String.class));
+
+        _map.putIfAbsent(String.class, "string");
+
+        assertEquals("string", _map.get(String.class));
+        assertNull(_map.get(Integer.class));
+    }
+
+    public void testPutIfAbsent()
+    {
+        assertEquals("first", _map.putIfAbsent(String.class, "first"));
+        assertEquals("first", _map.putIfAbsent(String.class, "second"));
+
+        assertEquals("first", _map.get(String.class));
+    }
+
+    public void testGrowth()
+    {
+        Class[] classes = {String.class, Integer.class, Long.class, Short.class, Byte.class,
+            Character.class, Boolean.class, Float.class, Double.class, Object.class, Class.class,
+            Thread.class, Runnable.class, Number.class, StringBuffer.class, Math.class,
+            System.class, Runtime.class, Throwable.class, Exception.class};
+
+        for (int i = 0; i < classes.length; i++)
+            _map.putIfAbsent(classes[i], new Integer(i));
+
+        for (int i = 0; i < classes.length; i++)
+            assertEquals(new Integer(i), _map.get(classes[i]));
+    }
+
+    private WeakReference putClassFromDisposableLoader()
+    {
+        ClassLoader loader = new URLClassLoader(new URL[0], null);
+
+        Class clazz = Proxy.getProxyClass(loader, new Class[]{Runnable.class});
+
+        _map.putIfAbsent(clazz, "value");
+
+        assertEquals("value", _map.get(clazz));
+
+        return new WeakReference(clazz);
+    }
+
+    public void testDoesNotPinClasses() throws Exception
+    {
+        WeakReference classRef = putClassFromDisposableLoader();
+
+        for (int i = 0; i < 50 && classRef.get() != null; i++)
+        {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertNull("Class is still reachable", classRef.get());
+
+        // Adding another entry purges the cleared entry
+        _map.putIfAbsent(String.class, "string");
+
+        assertEquals("string", _map.get(String.class));
+    }
+}